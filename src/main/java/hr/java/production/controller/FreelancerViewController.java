@@ -1,11 +1,11 @@
 package hr.java.production.controller;
 
-import hr.java.production.exception.DatabaseException;
 import hr.java.production.model.Freelancer;
 import hr.java.production.model.Role;
 import hr.java.production.model.User;
 import hr.java.production.service.FreelancerService;
 import hr.java.production.ui.Alerts;
+import hr.java.production.ui.AsyncLoader;
 import hr.java.production.ui.ScreenMode;
 import hr.java.production.ui.Windows;
 import hr.java.production.util.SessionManager;
@@ -52,9 +52,13 @@ public class FreelancerViewController {
     @FXML
     private TextField filterField;
 
+    @FXML
+    private ProgressIndicator loadingIndicator;
+
     private final FreelancerService freelancerService = new FreelancerService();
     private final ObservableList<Freelancer> currentList = FXCollections.observableArrayList();
     private FilteredList<Freelancer> filtered;
+    private AsyncLoader<List<Freelancer>> loader;
 
     private enum ActiveFilter { ANY, ACTIVE, INACTIVE }
 
@@ -87,14 +91,6 @@ public class FreelancerViewController {
             catch (NumberFormatException _) { return s1.compareTo(s2); }
         });
 
-        try {
-            List<Freelancer> freelancers = freelancerService.findAll();
-            currentList.setAll(freelancers);
-        } catch (DatabaseException e) {
-            currentList.clear();
-            Alerts.error("Dogodila se greška u dohvaćanju suradnika", e);
-        }
-
         filtered = new FilteredList<>(currentList, f -> true);
         SortedList<Freelancer> sorted = new SortedList<>(filtered);
         sorted.comparatorProperty().bind(freelancerTable.comparatorProperty());
@@ -107,7 +103,8 @@ public class FreelancerViewController {
             deleteButton.setDisable(true);
         }
 
-        applyFilters();
+        loader = new AsyncLoader<>(loadingIndicator);
+        reloadFreelancers();
     }
 
     @FXML
@@ -146,13 +143,15 @@ public class FreelancerViewController {
     }
 
     private void reloadFreelancers() {
-        try {
-            currentList.setAll(freelancerService.findAll());
-            applyFilters(); // keep current filters active
-        } catch (DatabaseException e) {
-            currentList.clear();
-            Alerts.error("Dogodila se greška u dohvaćanju suradnika", e);
-        }
+        loader.load(freelancerService::findAllAsync,
+                freelancers -> {
+                    currentList.setAll(freelancers);
+                    applyFilters(); // keep current filters active
+                },
+                e -> {
+                    currentList.clear();
+                    Alerts.error("Dogodila se greška u dohvaćanju suradnika", e);
+                });
     }
 
     private Stage getStage() {
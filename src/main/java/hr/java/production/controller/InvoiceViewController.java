@@ -1,6 +1,5 @@
 package hr.java.production.controller;
 
-import hr.java.production.exception.DatabaseException;
 import hr.java.production.model.Freelancer;
 import hr.java.production.model.Invoice;
 import hr.java.production.model.Role;
@@ -8,6 +7,7 @@ import hr.java.production.model.User;
 import hr.java.production.service.InvoiceService;
 import hr.java.production.service.InvoiceService.InvoiceView;
 import hr.java.production.ui.Alerts;
+import hr.java.production.ui.AsyncLoader;
 import hr.java.production.ui.ScreenMode;
 import hr.java.production.ui.UiUtils;
 import hr.java.production.ui.Windows;
@@ -48,10 +48,13 @@ public final class InvoiceViewController {
     @FXML private Button viewButton;
     @FXML private Button deleteButton;
 
+    @FXML private ProgressIndicator loadingIndicator;
+
     private final InvoiceService invoiceService = new InvoiceService();
     private final ObservableList<InvoiceView> currentList = FXCollections.observableArrayList();
     private FilteredList<InvoiceView> filtered;
     private Long userFreelancerId = null;
+    private AsyncLoader<List<InvoiceView>> loader;
 
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy.");
 
@@ -90,15 +93,6 @@ public final class InvoiceViewController {
             catch (NumberFormatException _) { return s1.compareTo(s2); }
         });
 
-        // učitavanje podataka za tabloicu
-        try {
-            List<InvoiceView> views = invoiceService.findAll();
-            currentList.setAll(views);
-        } catch (DatabaseException e) {
-            currentList.clear();
-            Alerts.error("Greška u dohvaćanju faktura za tablicu faktura.", e);
-        }
-
         // filtira
         filtered = new FilteredList<>(currentList, iv -> true);
         SortedList<InvoiceView> sorted = new SortedList<>(filtered);
@@ -110,7 +104,9 @@ public final class InvoiceViewController {
             userFreelancerId = u.linkedEntityId();
         }
 
-        applyFilters();
+        // učitavanje podataka za tablicu, bez blokiranja prikaza
+        loader = new AsyncLoader<>(loadingIndicator);
+        reloadInvoices();
     }
 
     @FXML
@@ -178,14 +174,15 @@ public final class InvoiceViewController {
     }
 
     private void reloadInvoices() {
-        try {
-            List<InvoiceView> views = invoiceService.findAll();
-            currentList.setAll(views);
-            applyFilters(); // keep current filters active
-        } catch (DatabaseException e) {
-            currentList.clear();
-            Alerts.error("Greška u dohvaćanju fakture.", e);
-        }
+        loader.load(invoiceService::findAllAsync,
+                views -> {
+                    currentList.setAll(views);
+                    applyFilters(); // keep current filters active
+                },
+                e -> {
+                    currentList.clear();
+                    Alerts.error("Greška u dohvaćanju faktura za tablicu faktura.", e);
+                });
     }
 
     @FXML
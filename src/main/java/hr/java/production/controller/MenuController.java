@@ -3,6 +3,7 @@ package hr.java.production.controller;
 import hr.java.production.model.Role;
 import hr.java.production.model.User;
 import hr.java.production.thread.FinanceOverdueRefresher;
+import hr.java.production.thread.InvoiceTotalsChecker;
 import hr.java.production.util.SessionManager;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
@@ -24,6 +25,7 @@ public class MenuController {
     @FXML private Label overdueBanner;
 
     private FinanceOverdueRefresher overdueRefresher;
+    private InvoiceTotalsChecker totalsChecker;
 
     public void initialize() {
         User u = SessionManager.getCurrentUser();
@@ -35,12 +37,20 @@ public class MenuController {
             applyFreelancerView();
         }
 
-        overdueRefresher = new FinanceOverdueRefresher(overdueBanner, 10);
+        overdueRefresher = new FinanceOverdueRefresher(overdueBanner);
         overdueRefresher.start();
 
+        if (!u.role().equals(Role.FREELANCER)) {
+            totalsChecker = new InvoiceTotalsChecker();
+            totalsChecker.start();
+        }
+
         javafx.application.Platform.runLater(() -> {
             var window = overdueBanner.getScene().getWindow();
-            window.setOnHiding(e -> overdueRefresher.close());
+            window.setOnHiding(e -> {
+                overdueRefresher.close();
+                if (totalsChecker != null) totalsChecker.close();
+            });
         });
     }
 
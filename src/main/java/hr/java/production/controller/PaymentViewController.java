@@ -1,12 +1,12 @@
 package hr.java.production.controller;
 
-import hr.java.production.exception.DatabaseException;
 import hr.java.production.model.Freelancer;
 import hr.java.production.model.Payment;
 import hr.java.production.model.Role;
 import hr.java.production.model.User;
 import hr.java.production.service.PaymentService;
 import hr.java.production.ui.Alerts;
+import hr.java.production.ui.AsyncLoader;
 import hr.java.production.ui.ScreenMode;
 import hr.java.production.ui.UiUtils;
 import hr.java.production.ui.Windows;
@@ -47,10 +47,13 @@ public class PaymentViewController {
     @FXML private Button viewButton;
     @FXML private Button deleteButton;
 
+    @FXML private ProgressIndicator loadingIndicator;
+
     private final PaymentService paymentService = new PaymentService();
     private final ObservableList<Payment> currentList = FXCollections.observableArrayList();
     private FilteredList<Payment> filtered;
     private Long userFreelancerId = null;
+    private AsyncLoader<List<Payment>> loader;
 
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy.");
 
@@ -88,16 +91,6 @@ public class PaymentViewController {
 
         datePaidCol.setComparator(UiUtils.dateStringComparator(DATE_FORMAT));
 
-
-
-        try {
-            List<Payment> payments = paymentService.findAll();
-            currentList.setAll(payments);
-        } catch (DatabaseException e) {
-            Alerts.error("Greška u učitavanju podataka o uplatama.", e);
-            currentList.clear();
-        }
-
         // filtriranje i sortiranje
         filtered = new FilteredList<>(currentList, p -> true);
         SortedList<Payment> sorted = new SortedList<>(filtered);
@@ -113,7 +106,8 @@ public class PaymentViewController {
             deleteButton.setDisable(true);
         }
 
-        applyFilters();
+        loader = new AsyncLoader<>(loadingIndicator);
+        reloadPayments();
     }
 
     @FXML
@@ -164,13 +158,15 @@ public class PaymentViewController {
     }
 
     private void reloadPayments() {
-        try {
-            currentList.setAll(paymentService.findAll()); // fully hydrated
-            applyFilters(); // keep current filters
-        } catch (DatabaseException e) {
-            currentList.clear();
-            Alerts.error("Dogodila se greška u dohvaćanju uplata", e);
-        }
+        loader.load(paymentService::findAllAsync,
+                payments -> {
+                    currentList.setAll(payments); // fully hydrated
+                    applyFilters(); // keep current filters
+                },
+                e -> {
+                    currentList.clear();
+                    Alerts.error("Dogodila se greška u dohvaćanju uplata", e);
+                });
     }
 
     @FXML
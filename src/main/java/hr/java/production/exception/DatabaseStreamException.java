@@ -0,0 +1,26 @@
+package hr.java.production.exception;
+
+/**
+ * Neprovjerena iznimka za greške baze podataka koje nastanu tijekom iteriranja
+ * kroz {@link java.util.stream.Stream} redaka, gdje se provjerene iznimke ne mogu baciti.
+ */
+public class DatabaseStreamException extends RuntimeException {
+    public DatabaseStreamException(String message) {
+        super(message);
+    }
+
+    public DatabaseStreamException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public DatabaseStreamException(Throwable cause) {
+        super(cause);
+    }
+
+    public DatabaseStreamException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+
+    public DatabaseStreamException() {
+    }
+}
@@ -38,6 +38,15 @@ public final class BinaryChangeLogger implements ChangeLogger {
         writeBinary(entry);
     }
 
+    @Override
+    public <T extends Entity & Serializable> void logDeleteAll(List<T> oldValues) {
+        if (oldValues.isEmpty()) return;
+        String user = SessionManager.getCurrentUser().username();
+        List<ChangeLog<T>> entries = new ArrayList<>(oldValues.size());
+        for (T oldValue : oldValues) entries.add(ChangeLog.deleted(oldValue, user));
+        writeBinary(entries);
+    }
+
     public List<ChangeLog<Entity>> readAll() {
         List<ChangeLog<Entity>> out = new ArrayList<>();
         for (ChangeLog<? extends Entity> raw : readAllRaw()) {
@@ -64,6 +73,11 @@ public final class BinaryChangeLogger implements ChangeLogger {
 
 
     private static void writeBinary(Object entry) {
+        writeBinary(List.of(entry));
+    }
+
+    /** Zapisuje sve zapise uz jedno otvaranje datoteke. */
+    private static void writeBinary(List<?> entries) {
         synchronized (BinaryChangeLogger.class) {
             try {
                 Files.createDirectories(LOG_FILE.getParent());
@@ -74,7 +88,7 @@ public final class BinaryChangeLogger implements ChangeLogger {
                      ObjectOutputStream oos = append
                              ? new AppendableObjectOutputStream(os)
                              : new ObjectOutputStream(os)) {
-                    oos.writeObject(entry);
+                    for (Object entry : entries) oos.writeObject(entry);
                     oos.flush();
                 }
             } catch (IOException e) {
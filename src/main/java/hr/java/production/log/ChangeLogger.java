@@ -36,6 +36,14 @@ public sealed interface ChangeLogger permits BinaryChangeLogger {
      */
     <T extends Entity & Serializable> void logDelete(T oldValue);
 
+    /**
+     * Zapiše DELETE promjene više entiteta odjednom (npr. pri skupnom brisanju).
+     *
+     * @param oldValues obrisane vrijednosti
+     * @param <T>       tip entiteta
+     */
+    <T extends Entity & Serializable> void logDeleteAll(List<T> oldValues);
+
     /**
      * Vraća sve zapise određenog tipa.
      *
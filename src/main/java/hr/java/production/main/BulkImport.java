@@ -0,0 +1,39 @@
+package hr.java.production.main;
+
+import hr.java.production.exception.DatabaseException;
+import hr.java.production.service.BulkImportService;
+import hr.java.production.service.BulkImportService.Kind;
+import hr.java.production.service.BulkImportService.Result;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Skupni uvoz CSV datoteka iz naredbenog retka (vidi {@link BulkImportService}).
+ * <p>
+ * Pokretanje: {@code BulkImport <vrsta> <datoteka> [<vrsta> <datoteka> ...]}, gdje je vrsta
+ * FREELANCER, INVOICE, SERVICE ili PAYMENT. Datoteke se uvoze redom kojim su navedene, pa
+ * freelanceri moraju biti prije računa, a računi prije stavki i uplata. Prekinuti uvoz
+ * nastavlja se ponovnim pokretanjem s istim argumentima.
+ */
+public class BulkImport {
+
+    public static void main(String[] args) throws DatabaseException, IOException {
+        if (args.length == 0 || args.length % 2 != 0) {
+            System.err.println("Upotreba: BulkImport <vrsta> <datoteka> [<vrsta> <datoteka> ...]");
+            System.err.println("Vrste: FREELANCER, INVOICE, SERVICE, PAYMENT");
+            System.exit(2);
+        }
+        BulkImportService service = new BulkImportService();
+        for (int i = 0; i < args.length; i += 2) {
+            Kind kind = Kind.valueOf(args[i].toUpperCase(Locale.ROOT));
+            Path file = Path.of(args[i + 1]);
+            Result result = service.importFile(kind, file, r -> System.out.println("  " + r));
+            System.out.println(result);
+            if (result.rejected() > 0) {
+                System.out.println("Odbijeni zapisi: " + result.rejectsFile());
+            }
+        }
+    }
+}
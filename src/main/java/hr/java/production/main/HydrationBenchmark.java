@@ -0,0 +1,151 @@
+package hr.java.production.main;
+
+import hr.java.production.exception.DatabaseConnectionException;
+import hr.java.production.exception.DatabaseException;
+import hr.java.production.metrics.Metrics;
+import hr.java.production.model.Freelancer;
+import hr.java.production.model.Invoice;
+import hr.java.production.model.Payment;
+import hr.java.production.model.Service;
+import hr.java.production.repo.db.FreelancerDao;
+import hr.java.production.repo.db.InvoiceDao;
+import hr.java.production.repo.db.PaymentDao;
+import hr.java.production.repo.db.ServiceDao;
+import hr.java.production.service.InvoiceService;
+import hr.java.production.service.InvoiceService.HydrationMode;
+import hr.java.production.util.DatabaseProfile;
+import hr.java.production.util.DbUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Usporedba BATCH i JOIN načina hidracije {@link InvoiceService#findAll(HydrationMode)}.
+ * Puni bazu sintetskim računima (zadano 100 000, po 3 stavke, svaki drugi plaćen),
+ * mjeri oba načina i na kraju briše umetnute podatke.
+ * <p>
+ * Pokretanje: {@code HydrationBenchmark [brojRacuna] [brojPonavljanja] [--shared]}. Bez
+ * {@code -Ddb.profile=...} izvodi se nad bazom u memoriji ({@code memory}), a ne nad profilom
+ * iz db.properties. Dijeljeni H2 server ({@code tcp}) koriste i drugi klijenti, koji bi vidjeli
+ * umetnute podatke, a prekinuto izvođenje bi ih ostavilo u bazi; zato se nad njim izvodi
+ * samo uz zastavicu {@code --shared}.
+ */
+public class HydrationBenchmark {
+    private static final int SERVICES_PER_INVOICE = 3;
+    private static final String SHARED_FLAG = "--shared";
+
+    public static void main(String[] args) throws DatabaseException, IOException {
+        List<String> params = new ArrayList<>(List.of(args));
+        boolean shared = params.remove(SHARED_FLAG);
+        if (System.getProperty(DatabaseProfile.PROFILE_KEY) == null) {
+            System.setProperty(DatabaseProfile.PROFILE_KEY, DatabaseProfile.MEMORY.name().toLowerCase(Locale.ROOT));
+        }
+        if (DbUtils.getProfile() == DatabaseProfile.TCP && !shared) {
+            System.err.println("Benchmark puni bazu sintetskim podacima; nad dijeljenom bazom (tcp) pokreće se samo uz "
+                    + SHARED_FLAG);
+            System.exit(2);
+        }
+        int invoiceCount = params.size() > 0 ? Integer.parseInt(params.get(0)) : 100_000;
+        int rounds = params.size() > 1 ? Integer.parseInt(params.get(1)) : 5;
+
+        InvoiceDao invoiceDao = new InvoiceDao();
+        ServiceDao serviceDao = new ServiceDao();
+        PaymentDao paymentDao = new PaymentDao();
+
+        List<Long> seeded = seed(invoiceDao, serviceDao, paymentDao, invoiceCount);
+        try {
+            InvoiceService service = new InvoiceService();
+            for (HydrationMode mode : HydrationMode.values()) {
+                service.findAll(mode); // zagrijavanje
+            }
+            for (HydrationMode mode : HydrationMode.values()) {
+                long best = Long.MAX_VALUE;
+                long sum = 0;
+                int rows = 0;
+                for (int i = 0; i < rounds; i++) {
+                    long start = System.nanoTime();
+                    rows = service.findAll(mode).size();
+                    long elapsed = System.nanoTime() - start;
+                    best = Math.min(best, elapsed);
+                    sum += elapsed;
+                }
+                System.out.printf("%-5s rows=%d best=%.1f ms avg=%.1f ms%n",
+                        mode, rows, best / 1e6, sum / 1e6 / rounds);
+            }
+            System.out.println(DbUtils.getPoolStats());
+            Metrics.getInstance().dump(System.out);
+        } finally {
+            cleanUp(invoiceDao, seeded);
+        }
+    }
+
+    private static List<Long> seed(InvoiceDao invoiceDao, ServiceDao serviceDao, PaymentDao paymentDao,
+                                   int invoiceCount) throws DatabaseException {
+        try (Connection conn = DbUtils.connectToDatabase()) {
+            conn.setAutoCommit(false);
+            List<Freelancer> freelancers = new FreelancerDao().findAll(conn);
+            if (freelancers.isEmpty()) throw new DatabaseException("Baza nema freelancera za benchmark");
+
+            LocalDate start = LocalDate.of(2020, 1, 1);
+            List<Invoice> invoices = new ArrayList<>(invoiceCount);
+            for (int i = 0; i < invoiceCount; i++) {
+                LocalDate date = start.plusDays(i % 1500);
+                invoices.add(new Invoice.Builder()
+                        .freelancer(Freelancer.ref(freelancers.get(i % freelancers.size()).getId()))
+                        .invoiceDate(date)
+                        .dueDate(date.plusDays(30))
+                        .build());
+            }
+            invoiceDao.saveAll(conn, invoices);
+
+            List<Service> services = new ArrayList<>(invoiceCount * SERVICES_PER_INVOICE);
+            List<Payment> payments = new ArrayList<>(invoiceCount / 2);
+            for (int i = 0; i < invoices.size(); i++) {
+                Invoice inv = invoices.get(i);
+                for (int j = 0; j < SERVICES_PER_INVOICE; j++) {
+                    services.add(new Service.Builder()
+                            .invoiceId(inv.getId())
+                            .serviceName("Benchmark usluga " + j)
+                            .unitFee(BigDecimal.valueOf(100 + j))
+                            .quantity(j + 1)
+                            .build());
+                }
+                if (i % 2 == 0) {
+                    payments.add(new Payment.Builder()
+                            .invoice(Invoice.ref(inv.getId()))
+                            .amount(BigDecimal.valueOf(600))
+                            .paidOn(LocalDateTime.of(inv.getDueDate(), LocalTime.NOON))
+                            .transactionId("BENCH-" + inv.getId())
+                            .build());
+                }
+            }
+            serviceDao.saveAll(conn, services);
+            invoiceDao.refreshTotals(conn, invoices.stream().map(Invoice::getId).toList());
+            paymentDao.saveAll(conn, payments);
+            conn.commit();
+            System.out.printf("Umetnuto %d računa, %d stavki, %d uplata%n",
+                    invoices.size(), services.size(), payments.size());
+            return invoices.stream().map(Invoice::getId).toList();
+        } catch (SQLException | DatabaseConnectionException e) {
+            throw new DatabaseException("Greška pri punjenju baze za benchmark", e);
+        }
+    }
+
+    private static void cleanUp(InvoiceDao invoiceDao, List<Long> invoiceIds) throws DatabaseException {
+        try (Connection conn = DbUtils.connectToDatabase()) {
+            conn.setAutoCommit(false);
+            invoiceDao.deleteAllReturning(conn, invoiceIds); // stavke i uplate brišu se kaskadno
+            conn.commit();
+        } catch (SQLException | DatabaseConnectionException e) {
+            throw new DatabaseException("Greška pri brisanju podataka benchmarka", e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package hr.java.production.main;
+
+import hr.java.production.exception.DatabaseException;
+import hr.java.production.service.InvoiceService;
+import hr.java.production.service.InvoiceService.ExportFilter;
+import hr.java.production.service.InvoiceService.ExportFormat;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+/**
+ * Izvoz računa u CSV ili JSON Lines datoteku iz naredbenog retka (vidi
+ * {@link InvoiceService#export(ExportFilter, ExportFormat, Path)}).
+ * <p>
+ * Pokretanje: {@code InvoiceExport <datoteka> [odDatuma] [doDatuma] [freelancerId]}; datumi su
+ * u obliku {@code 2024-01-01}, a {@code -} znači bez ograničenja. Format se određuje iz
+ * nastavka datoteke ({@code .jsonl} za JSON Lines, inače CSV).
+ */
+public class InvoiceExport {
+
+    public static void main(String[] args) throws DatabaseException {
+        if (args.length == 0) {
+            System.err.println("Upotreba: InvoiceExport <datoteka> [odDatuma] [doDatuma] [freelancerId]");
+            System.exit(2);
+        }
+        Path target = Path.of(args[0]);
+        ExportFormat format = target.getFileName().toString().endsWith(".jsonl") ? ExportFormat.JSONL : ExportFormat.CSV;
+        ExportFilter filter = new ExportFilter(
+                args.length > 1 && !args[1].equals("-") ? LocalDate.parse(args[1]) : null,
+                args.length > 2 && !args[2].equals("-") ? LocalDate.parse(args[2]) : null,
+                args.length > 3 ? Long.valueOf(args[3]) : null);
+
+        long start = System.nanoTime();
+        long count = new InvoiceService().export(filter, format, target);
+        System.out.printf("Izvezeno %d računa u %s (%.1f s)%n", count, target, (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,45 @@
+package hr.java.production.main;
+
+import hr.java.production.exception.DatabaseException;
+import hr.java.production.repo.db.ReportDao.Granularity;
+import hr.java.production.service.ReportService;
+import hr.java.production.service.ReportService.ReportFilter;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Ispis izvještaja iz naredbenog retka (vidi {@link ReportService}).
+ * <p>
+ * Pokretanje: {@code Report <izvještaj> <odDatuma> <doDatuma> [MONTH|QUARTER|YEAR] [freelancerId]}, gdje je
+ * izvještaj {@code payouts}, {@code balance}, {@code services} ili {@code days-to-pay}. Za
+ * {@code services} četvrti argument je broj usluga (zadano 10).
+ */
+public class Report {
+
+    public static void main(String[] args) throws DatabaseException {
+        if (args.length < 3) {
+            System.err.println("Upotreba: Report <payouts|balance|services|days-to-pay> <odDatuma> <doDatuma>"
+                    + " [MONTH|QUARTER|YEAR|brojUsluga] [freelancerId]");
+            System.exit(2);
+        }
+        ReportFilter filter = new ReportFilter(LocalDate.parse(args[1]), LocalDate.parse(args[2]),
+                args.length > 4 ? Long.valueOf(args[4]) : null);
+        String option = args.length > 3 ? args[3] : null;
+        Granularity granularity = option == null || args[0].equals("services")
+                ? Granularity.MONTH : Granularity.valueOf(option.toUpperCase(Locale.ROOT));
+
+        ReportService reports = new ReportService();
+        long start = System.nanoTime();
+        List<? extends Record> rows = switch (args[0]) {
+            case "payouts" -> reports.payoutsPerFreelancer(filter, granularity);
+            case "balance" -> reports.invoicedVsPaid(filter, granularity);
+            case "services" -> reports.topServices(filter, option == null ? 10 : Integer.parseInt(option));
+            case "days-to-pay" -> reports.daysToPay(filter, granularity);
+            default -> throw new IllegalArgumentException("Nepoznat izvještaj: " + args[0]);
+        };
+        rows.forEach(System.out::println);
+        System.out.printf("%d redaka (%.1f ms)%n", rows.size(), (System.nanoTime() - start) / 1e6);
+    }
+}
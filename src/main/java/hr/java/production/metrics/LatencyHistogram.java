@@ -0,0 +1,106 @@
+package hr.java.production.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram trajanja s logaritamsko-linearnim pretincima u mikrosekundama: svaka potencija
+ * broja dva podijeljena je na {@value #SUB_BUCKETS} jednakih pretinaca, pa je relativna
+ * pogreška percentila najviše 1/{@value #SUB_BUCKETS}. Najveće trajanje bilježi se točno.
+ * <p>
+ * Bilježenje je bez zaključavanja i sigurno za istovremeni poziv iz više dretvi; snimka
+ * nije atomarna u odnosu na istovremena bilježenja, što je za metrike prihvatljivo.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Dovoljno pretinaca za sve vrijednosti tipa long (64 potencije po 16 pretinaca). */
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Bilježi jedno trajanje.
+     *
+     * @param nanos trajanje u nanosekundama; negativne vrijednosti bilježe se kao nula
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketOf(value / 1_000));
+        count.increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    /**
+     * Vraća snimku histograma.
+     *
+     * @return broj, prosjek, p50, p99 i najveće trajanje u milisekundama
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = buckets.get(i);
+            n += copy[i];
+        }
+        long max = maxNanos.get();
+        if (n == 0) return new Snapshot(0, 0, 0, 0, 0);
+        return new Snapshot(n,
+                totalNanos.sum() / 1e6 / count.sum(),
+                percentileMillis(copy, n, 0.50, max),
+                percentileMillis(copy, n, 0.99, max),
+                max / 1e6);
+    }
+
+    /** Briše sve zabilježene vrijednosti. */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+        count.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+
+    private static double percentileMillis(long[] counts, long n, double quantile, long maxNanos) {
+        long rank = Math.max(1, (long) Math.ceil(quantile * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                // gornja granica pretinca, ali ne iznad stvarnog maksimuma
+                return Math.min(upperBoundMicros(i) * 1_000d, maxNanos) / 1e6;
+            }
+        }
+        return maxNanos / 1e6;
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static double upperBoundMicros(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        return Math.scalb((double) (SUB_BUCKETS + sub + 1), exponent - SUB_BUCKET_BITS) - 1;
+    }
+
+    /**
+     * Snimka histograma.
+     *
+     * @param count      broj zabilježenih trajanja
+     * @param meanMillis prosječno trajanje
+     * @param p50Millis  medijan
+     * @param p99Millis  99. percentil
+     * @param maxMillis  najveće trajanje
+     */
+    public record Snapshot(long count, double meanMillis, double p50Millis, double p99Millis, double maxMillis) {
+    }
+}
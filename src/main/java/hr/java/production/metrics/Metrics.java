@@ -0,0 +1,201 @@
+package hr.java.production.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Zajednički registar mjerača aplikacije. Bilježi trajanje po SQL naredbi (uz broj redaka),
+ * po metodi servisa, po transakciji i čekanje na vezu iz poola, te brojače događaja (npr.
+ * ponavljanja transakcija). Podaci se mogu dohvatiti unutar procesa ({@link #snapshot()},
+ * {@link #counters()}) ili na zahtjev ispisati u log ili datoteku.
+ * <p>
+ * Broj mjerača po kategoriji je ograničen na {@value #MAX_TIMERS_PER_CATEGORY}; operacije
+ * iznad granice bilježe se pod zajedničkim nazivom {@value #OVERFLOW_NAME}.
+ */
+public final class Metrics {
+    private static final Logger log = LoggerFactory.getLogger(Metrics.class);
+
+    /** Vrsta mjerene operacije. */
+    public enum Category { SQL, SERVICE, TRANSACTION, CONNECTION_WAIT }
+
+    static final int MAX_TIMERS_PER_CATEGORY = 1_000;
+    static final String OVERFLOW_NAME = "(ostalo)";
+
+    private static final Metrics INSTANCE = new Metrics();
+
+    private final Map<Category, Map<String, Timer>> timers = new EnumMap<>(Category.class);
+    /** SQL tekst kako ga šalje DAO -> mjerač s normaliziranim nazivom. */
+    private final Map<String, Timer> sqlTimers = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private volatile boolean enabled = true;
+
+    private Metrics() {
+        for (Category c : Category.values()) timers.put(c, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Vraća zajednički registar.
+     *
+     * @return instanca registra
+     */
+    public static Metrics getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Uključuje ili isključuje mjerenje. Kad je isključeno, mjesta mjerenja preskaču
+     * bilježenje (i omatanje JDBC objekata), a postojeći podaci ostaju sačuvani.
+     *
+     * @param enabled true za uključeno mjerenje
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Vraća mjerač za danu operaciju, stvarajući ga pri prvom pozivu.
+     *
+     * @param category kategorija operacije
+     * @param name     naziv operacije
+     * @return mjerač
+     */
+    public Timer timer(Category category, String name) {
+        Map<String, Timer> byName = timers.get(category);
+        Timer t = byName.get(name);
+        if (t != null) return t;
+        String key = byName.size() < MAX_TIMERS_PER_CATEGORY ? name : OVERFLOW_NAME;
+        return byName.computeIfAbsent(key, n -> new Timer(category, n));
+    }
+
+    /**
+     * Vraća mjerač za SQL naredbu. Naziv mjerača je tekst naredbe sa sažetim razmacima,
+     * pa se višeredni text blockovi prikazuju u jednom retku.
+     *
+     * @param sql SQL tekst naredbe
+     * @return mjerač naredbe
+     */
+    public Timer sqlTimer(String sql) {
+        Timer t = sqlTimers.get(sql);
+        if (t != null) return t;
+        t = timer(Category.SQL, normalize(sql));
+        if (sqlTimers.size() < MAX_TIMERS_PER_CATEGORY) sqlTimers.putIfAbsent(sql, t);
+        return t;
+    }
+
+    /**
+     * Povećava brojač događaja za jedan, stvarajući ga pri prvom pozivu.
+     *
+     * @param name naziv brojača (npr. "transaction.retry")
+     */
+    public void increment(String name) {
+        counters.computeIfAbsent(name, n -> new LongAdder()).increment();
+    }
+
+    /**
+     * Vraća trenutne vrijednosti svih brojača, poredane po nazivu.
+     *
+     * @return naziv brojača -> vrijednost
+     */
+    public Map<String, Long> counters() {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((name, value) -> result.put(name, value.sum()));
+        return result;
+    }
+
+    /**
+     * Vraća snimke svih mjerača, po kategoriji i padajuće po ukupnom vremenu.
+     *
+     * @return snimke mjerača
+     */
+    public List<Timer.Stats> snapshot() {
+        List<Timer.Stats> result = new ArrayList<>();
+        for (Category c : Category.values()) result.addAll(snapshot(c));
+        return result;
+    }
+
+    /**
+     * Vraća snimke mjerača jedne kategorije, padajuće po ukupnom vremenu.
+     *
+     * @param category kategorija
+     * @return snimke mjerača
+     */
+    public List<Timer.Stats> snapshot(Category category) {
+        List<Timer.Stats> result = new ArrayList<>();
+        for (Timer t : timers.get(category).values()) result.add(t.snapshot());
+        result.sort(Comparator.comparingDouble(
+                (Timer.Stats s) -> s.latency().meanMillis() * s.latency().count()).reversed());
+        return result;
+    }
+
+    /** Briše sve zabilježene vrijednosti; mjerači ostaju registrirani. */
+    public void reset() {
+        timers.values().forEach(byName -> byName.values().forEach(Timer::reset));
+        counters.values().forEach(LongAdder::reset);
+    }
+
+    /**
+     * Ispisuje sve mjerače, jedan po retku.
+     *
+     * @param out odredište ispisa
+     * @throws IOException ako ispis ne uspije
+     */
+    public void dump(Appendable out) throws IOException {
+        out.append("# metrike ").append(LocalDateTime.now().toString()).append(System.lineSeparator());
+        for (Timer.Stats s : snapshot()) {
+            if (s.latency().count() == 0) continue;
+            out.append(s.toString()).append(System.lineSeparator());
+        }
+        for (Map.Entry<String, Long> c : counters().entrySet()) {
+            out.append("COUNTER ").append(c.getKey()).append('=').append(String.valueOf(c.getValue()))
+                    .append(System.lineSeparator());
+        }
+    }
+
+    /**
+     * Ispisuje sve mjerače u datoteku, prepisujući postojeći sadržaj.
+     *
+     * @param file odredišna datoteka
+     * @throws IOException ako se datoteka ne može zapisati
+     */
+    public void dumpTo(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            dump(w);
+        }
+    }
+
+    /** Ispisuje sve mjerače u log na razini INFO. */
+    public void dumpToLog() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            dump(sb);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // StringBuilder ne baca IOException
+        }
+        log.info("Metrics snapshot{}{}", System.lineSeparator(), sb);
+    }
+
+    private static String normalize(String sql) {
+        return sql.strip().replaceAll("\\s+", " ");
+    }
+}
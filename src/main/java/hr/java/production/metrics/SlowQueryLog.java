@@ -0,0 +1,114 @@
+package hr.java.production.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bilježi SQL naredbe čije izvršavanje traje dulje od zadanog praga: tekst naredbe, broj
+ * vezanih parametara (i elemenata niza ili redaka batcha), trajanje i metodu servisa iz koje
+ * je naredba pozvana. Zapisi idu u zaseban logger {@value #LOGGER_NAME}, kojeg logback
+ * konfiguracija usmjerava u vlastitu rotirajuću datoteku.
+ */
+public final class SlowQueryLog {
+    /** Naziv loggera sporih upita. */
+    public static final String LOGGER_NAME = "hr.java.production.slowquery";
+
+    private static final Logger log = LoggerFactory.getLogger(LOGGER_NAME);
+    private static final SlowQueryLog INSTANCE = new SlowQueryLog();
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    private static final String SERVICE_PACKAGE = "hr.java.production.service.";
+    private static final String TRANSACTION_SERVICE = SERVICE_PACKAGE + "TransactionService";
+
+    private final LongAdder count = new LongAdder();
+    private volatile long thresholdNanos;
+
+    private SlowQueryLog() {}
+
+    /**
+     * Vraća zajednički log sporih upita.
+     *
+     * @return instanca loga
+     */
+    public static SlowQueryLog getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Postavlja prag iznad kojeg se naredba bilježi.
+     *
+     * @param millis prag u milisekundama; 0 isključuje bilježenje
+     */
+    public void setThresholdMillis(long millis) {
+        this.thresholdNanos = Math.max(0, millis) * 1_000_000;
+    }
+
+    public boolean isEnabled() {
+        return thresholdNanos > 0;
+    }
+
+    /**
+     * Provjerava prelazi li trajanje prag.
+     *
+     * @param elapsedNanos trajanje izvršavanja
+     * @return true ako je bilježenje uključeno i trajanje je iznad praga
+     */
+    public boolean isSlow(long elapsedNanos) {
+        long threshold = thresholdNanos;
+        return threshold > 0 && elapsedNanos >= threshold;
+    }
+
+    /**
+     * Vraća broj zabilježenih sporih naredbi.
+     *
+     * @return broj sporih naredbi od pokretanja
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Bilježi sporu naredbu. Metoda servisa određuje se iz stoga pozivatelja, pa se mora
+     * pozvati na dretvi koja je izvršila naredbu.
+     *
+     * @param sql            SQL tekst naredbe
+     * @param parameterCount broj parametara naredbe
+     * @param detail         dodatni opis vezanih vrijednosti (npr. veličina niza), može biti prazan
+     * @param elapsedNanos   trajanje izvršavanja
+     * @param failed         je li izvršavanje završilo greškom
+     */
+    public void record(String sql, int parameterCount, String detail, long elapsedNanos, boolean failed) {
+        count.increment();
+        log.warn("{} ms{} params={}{} caller={} sql={}",
+                String.format("%.1f", elapsedNanos / 1e6),
+                failed ? " FAILED" : "",
+                parameterCount,
+                detail.isEmpty() ? "" : " " + detail,
+                findCaller(),
+                sql.strip().replaceAll("\\s+", " "));
+    }
+
+    /** Prva metoda servisnog sloja na stogu (lambda se svodi na metodu u kojoj je napisana). */
+    private static String findCaller() {
+        Optional<String> caller = STACK_WALKER.walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith(SERVICE_PACKAGE)
+                        && !f.getClassName().equals(TRANSACTION_SERVICE))
+                .findFirst()
+                .map(f -> simpleName(f.getClassName()) + "." + methodName(f.getMethodName())));
+        return caller.orElse("-");
+    }
+
+    private static String simpleName(String className) {
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
+
+    private static String methodName(String name) {
+        // lambda$findAll$3 -> findAll
+        if (!name.startsWith("lambda$")) return name;
+        int end = name.indexOf('$', "lambda$".length());
+        return end < 0 ? name : name.substring("lambda$".length(), end);
+    }
+}
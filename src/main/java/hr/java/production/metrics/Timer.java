@@ -0,0 +1,82 @@
+package hr.java.production.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mjerač jedne operacije (SQL naredbe, metode servisa, transakcije...): histogram trajanja,
+ * broj neuspjelih izvršavanja i broj obrađenih redaka. Instance se dobivaju iz {@link Metrics}.
+ */
+public final class Timer {
+    private final Metrics.Category category;
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+
+    Timer(Metrics.Category category, String name) {
+        this.category = category;
+        this.name = name;
+    }
+
+    public Metrics.Category getCategory() {
+        return category;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Bilježi jedno izvršavanje.
+     *
+     * @param elapsedNanos trajanje u nanosekundama
+     * @param failed       je li izvršavanje završilo greškom
+     */
+    public void record(long elapsedNanos, boolean failed) {
+        latency.record(elapsedNanos);
+        if (failed) failures.increment();
+    }
+
+    /**
+     * Dodaje broj redaka koje je operacija vratila ili promijenila.
+     *
+     * @param count broj redaka
+     */
+    public void addRows(long count) {
+        if (count > 0) rows.add(count);
+    }
+
+    /**
+     * Vraća snimku mjerača.
+     *
+     * @return trenutno stanje mjerača
+     */
+    public Stats snapshot() {
+        return new Stats(category, name, latency.snapshot(), failures.sum(), rows.sum());
+    }
+
+    void reset() {
+        latency.reset();
+        failures.reset();
+        rows.reset();
+    }
+
+    /**
+     * Snimka mjerača.
+     *
+     * @param category kategorija operacije
+     * @param name     naziv operacije (za SQL normalizirani tekst naredbe)
+     * @param latency  snimka histograma trajanja
+     * @param failures broj izvršavanja završenih greškom
+     * @param rows     ukupan broj vraćenih ili promijenjenih redaka
+     */
+    public record Stats(Metrics.Category category, String name, LatencyHistogram.Snapshot latency,
+                        long failures, long rows) {
+        @Override
+        public String toString() {
+            return String.format("%s %s: count=%d failures=%d rows=%d mean=%.2f ms p50=%.2f ms p99=%.2f ms max=%.2f ms",
+                    category, name, latency.count(), failures, rows,
+                    latency.meanMillis(), latency.p50Millis(), latency.p99Millis(), latency.maxMillis());
+        }
+    }
+}
@@ -15,6 +15,13 @@ public class Invoice extends Entity {
     private LocalDate invoiceDate;
     private LocalDate dueDate;
     private List<Service> services;
+    /**
+     * Zbroj i broj stavki spremljeni uz račun u bazi (invoice.total_amount, invoice.line_count);
+     * null kod računa koji nije učitan iz baze. Izvedeni su iz stavki pa se ne zapisuju u
+     * ChangeLog.
+     */
+    private transient BigDecimal totalAmount;
+    private transient int lineCount;
 
     private Invoice(Long id) {
         super(id);
@@ -44,6 +51,8 @@ public class Invoice extends Entity {
         private LocalDate invoiceDate;
         private LocalDate dueDate;
         private List<Service> services = new ArrayList<>();
+        private BigDecimal totalAmount;
+        private int lineCount;
 
         public Builder freelancer(Freelancer freelancer) {
             this.freelancer = freelancer;
@@ -70,6 +79,13 @@ public class Invoice extends Entity {
             return self();
         }
 
+        /** Spremljeni zbroj i broj stavki (pri mapiranju retka iz baze). */
+        public Builder totals(BigDecimal totalAmount, int lineCount) {
+            this.totalAmount = totalAmount;
+            this.lineCount = lineCount;
+            return self();
+        }
+
         @Override
         protected Builder self() {
             return this;
@@ -89,7 +105,10 @@ public class Invoice extends Entity {
             if (dueDate.isBefore(invoiceDate)) {
                 throw new ObjectValidationException("Datum dospijeća ne smije biti prije datuma izdavanja");
             }
-            return new Invoice(id, freelancer, invoiceDate, dueDate, services);
+            Invoice invoice = new Invoice(id, freelancer, invoiceDate, dueDate, services);
+            invoice.totalAmount = totalAmount;
+            invoice.lineCount = lineCount;
+            return invoice;
         }
     }
 
@@ -99,16 +118,51 @@ public class Invoice extends Entity {
     }
 
     /**
-     * Računa ukupnu vrijednost računa zbrajanjem svih stavki.
+     * Vraća ukupnu vrijednost računa. Za račun učitan iz baze to je spremljeni zbroj stavki,
+     * pa stavke ne moraju biti učitane; inače se zbrajaju stavke. {@link #setServices} briše
+     * spremljeni zbroj, ali izmjenu liste stavki ili pojedine stavke na mjestu (npr.
+     * {@code getServices().add(...)}, promjena količine) račun ne vidi - nakon takve izmjene
+     * treba pozvati {@link #setTotals} ili koristiti {@link #calculateTotalCost()}.
      *
      * @return ukupni iznos računa
      */
     public BigDecimal getTotalCost() {
+        return totalAmount != null ? totalAmount : calculateTotalCost();
+    }
+
+    /**
+     * Računa ukupnu vrijednost računa zbrajanjem svih stavki.
+     *
+     * @return zbroj iznosa stavki
+     */
+    public BigDecimal calculateTotalCost() {
+        if (services == null) return BigDecimal.ZERO;
         return services.stream()
                 .map(Service::calculateTotalCost)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
 
+    /**
+     * Vraća broj stavki računa; za račun učitan iz baze to je spremljeni broj stavki.
+     *
+     * @return broj stavki
+     */
+    public int getLineCount() {
+        if (totalAmount != null) return lineCount;
+        return services == null ? 0 : services.size();
+    }
+
+    /**
+     * Postavlja spremljeni zbroj i broj stavki (nakon upisa računa ili ponovnog izračuna u bazi).
+     *
+     * @param totalAmount zbroj iznosa stavki
+     * @param lineCount   broj stavki
+     */
+    public void setTotals(BigDecimal totalAmount, int lineCount) {
+        this.totalAmount = totalAmount;
+        this.lineCount = lineCount;
+    }
+
     public Freelancer getFreelancer() {
         return freelancer;
     }
@@ -137,8 +191,16 @@ public class Invoice extends Entity {
         return services;
     }
 
+    /**
+     * Postavlja stavke računa i briše spremljeni zbroj i broj stavki, pa se oni dalje računaju
+     * iz novih stavki.
+     *
+     * @param services stavke računa
+     */
     public void setServices(List<Service> services) {
         this.services = services;
+        this.totalAmount = null;
+        this.lineCount = 0;
     }
 
     /**
@@ -3,12 +3,23 @@ package hr.java.production.repo.db;
 import hr.java.production.exception.DatabaseAccessException;
 import hr.java.production.exception.DatabaseConnectionException;
 import hr.java.production.exception.DatabaseException;
+import hr.java.production.exception.DatabaseStreamException;
 import hr.java.production.model.Entity;
 import hr.java.production.util.DbUtils;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Apstraktna klasa koja implementira osnovne funkcionalnosti za rad s entitetima
@@ -18,14 +29,70 @@ import java.util.Optional;
  * @param <T> generički tip koji predstavlja tip entiteta kojim klasa upravlja
  */
 public abstract class DbDao<T extends Entity> {
-
+    /** Zadani broj redaka koji se šalje bazi u jednom JDBC batchu. */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    /** Najveći broj ID-eva koji se veže u jedan parametar niza kod upita po skupu ID-eva. */
+    protected static final int MAX_IDS_PER_QUERY = 5_000;
 
     protected final Class<T> type;
+    private int batchSize = DEFAULT_BATCH_SIZE;
 
     protected DbDao(Class<T> type) {
         this.type = type;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Postavlja broj redaka koji se šalje bazi u jednom JDBC batchu kod skupnih operacija.
+     *
+     * @param batchSize broj redaka po batchu, mora biti veći od 0
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("Veličina batcha mora biti veća od 0");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Priprema naredbu s vremenskim ograničenjem izvršavanja za danu vrstu operacije.
+     * Ograničenje se postavlja uvijek (i kad je 0) jer ga H2 drži na razini sesije, pa bi
+     * inače vrijedilo ograničenje prethodne naredbe na vezi. Veza iz poola ga šalje bazi
+     * samo kad se razlikuje od zadnjeg postavljenog (vidi {@code StatementCache}).
+     *
+     * @param conn veza na bazu podataka
+     * @param sql  SQL naredba
+     * @param kind vrsta operacije koja određuje ograničenje
+     * @return pripremljena naredba
+     * @throws SQLException ako se naredba ne može pripremiti
+     */
+    protected static PreparedStatement prepare(Connection conn, String sql, QueryType kind) throws SQLException {
+        return prepare(conn, sql, Statement.NO_GENERATED_KEYS, kind);
+    }
+
+    /**
+     * Priprema naredbu s vremenskim ograničenjem izvršavanja za danu vrstu operacije.
+     *
+     * @param conn              veza na bazu podataka
+     * @param sql               SQL naredba
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} ili {@link Statement#NO_GENERATED_KEYS}
+     * @param kind              vrsta operacije koja određuje ograničenje
+     * @return pripremljena naredba
+     * @throws SQLException ako se naredba ne može pripremiti
+     */
+    protected static PreparedStatement prepare(Connection conn, String sql, int autoGeneratedKeys, QueryType kind)
+            throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql, autoGeneratedKeys);
+        try {
+            ps.setQueryTimeout(kind.getTimeoutSeconds());
+        } catch (SQLException e) {
+            ps.close();
+            throw e;
+        }
+        return ps;
+    }
+
     /**
      * Veže parametre entiteta na dani PreparedStatement za SQL operaciju umetanja.
      *
@@ -75,7 +142,7 @@ public abstract class DbDao<T extends Entity> {
      * @throws DatabaseAccessException ako dođe do greške prilikom pristupa bazi podataka
      */
     public void save(Connection conn, T entity) throws DatabaseException {
-        try (PreparedStatement ps = conn.prepareStatement(getInsertSql(), Statement.RETURN_GENERATED_KEYS)) {
+        try (PreparedStatement ps = prepare(conn, getInsertSql(), Statement.RETURN_GENERATED_KEYS, QueryType.LOOKUP)) {
             bindInsert(ps, entity);
             int affected = ps.executeUpdate();
             if (affected != 1) throw new SQLException("Očekivan 1 red, utjecano: " + affected);
@@ -120,7 +187,7 @@ public abstract class DbDao<T extends Entity> {
     public void update(Connection conn, T entity) throws DatabaseException {
         if (entity.getId() == null)
             throw new DatabaseException("ID je obavezan za ažuriranje " + type.getSimpleName());
-        try (PreparedStatement ps = conn.prepareStatement(getUpdateSql())) {
+        try (PreparedStatement ps = prepare(conn, getUpdateSql(), QueryType.LOOKUP)) {
             bindUpdate(ps, entity);
             int affected = ps.executeUpdate();
             if (affected != 1) {
@@ -155,7 +222,7 @@ public abstract class DbDao<T extends Entity> {
      * @throws DatabaseException ako dođe do greške prilikom brisanja iz baze podataka
      */
     public void delete(Connection conn, Long id) throws DatabaseException {
-        try (PreparedStatement ps = conn.prepareStatement(getDeleteSql())) {
+        try (PreparedStatement ps = prepare(conn, getDeleteSql(), QueryType.LOOKUP)) {
             ps.setLong(1, id);
             int affected = ps.executeUpdate();
             if (affected != 1) {
@@ -168,6 +235,196 @@ public abstract class DbDao<T extends Entity> {
         }
     }
 
+    /**
+     * Sprema sve entitete u bazu podataka koristeći JDBC batch te postavlja generirane ID-eve
+     * na entitete, redom kojim su predani.
+     *
+     * @param entities entiteti koji se spremaju
+     * @throws DatabaseException ako dođe do greške prilikom spremanja
+     */
+    public final void saveAll(List<T> entities) throws DatabaseException {
+        try (Connection conn = DbUtils.connectToDatabase()) {
+            saveAll(conn, entities);
+        } catch (SQLException | DatabaseConnectionException e) {
+            throw new DatabaseException("Greška pri skupnom spremanju " + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Sprema sve entitete koristeći predanu vezu. Retci se šalju u batchevima veličine
+     * {@link #getBatchSize()}, a generirani ključevi se mapiraju natrag na entitete.
+     *
+     * @param conn     veza na bazu podataka
+     * @param entities entiteti koji se spremaju
+     * @throws DatabaseException ako dođe do greške prilikom spremanja
+     */
+    public void saveAll(Connection conn, List<T> entities) throws DatabaseException {
+        if (entities == null || entities.isEmpty()) return;
+        try (PreparedStatement ps = prepare(conn, getInsertSql(), Statement.RETURN_GENERATED_KEYS, QueryType.BULK)) {
+            for (int from = 0; from < entities.size(); from += batchSize) {
+                List<T> chunk = entities.subList(from, Math.min(from + batchSize, entities.size()));
+                for (T entity : chunk) {
+                    bindInsert(ps, entity);
+                    ps.addBatch();
+                }
+                checkBatchCounts(ps.executeBatch());
+                assignGeneratedKeys(ps, chunk);
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri skupnom spremanju " + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Ažurira sve entitete koristeći predanu vezu i JDBC batch.
+     *
+     * @param conn     veza na bazu podataka
+     * @param entities entiteti koji se ažuriraju, svaki mora imati ID
+     * @throws DatabaseException ako neki entitet nema ID, ne postoji ili dođe do greške prilikom ažuriranja
+     */
+    public void updateAll(Connection conn, List<T> entities) throws DatabaseException {
+        if (entities == null || entities.isEmpty()) return;
+        for (T entity : entities) {
+            if (entity.getId() == null)
+                throw new DatabaseException("ID je obavezan za ažuriranje " + type.getSimpleName());
+        }
+        try (PreparedStatement ps = prepare(conn, getUpdateSql(), QueryType.BULK)) {
+            for (int from = 0; from < entities.size(); from += batchSize) {
+                List<T> chunk = entities.subList(from, Math.min(from + batchSize, entities.size()));
+                for (T entity : chunk) {
+                    bindUpdate(ps, entity);
+                    ps.addBatch();
+                }
+                int[] counts = ps.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0)
+                        throw new DatabaseException(type.getSimpleName() + " s ID=" + chunk.get(i).getId() + " ne postoji");
+                }
+                checkBatchCounts(counts);
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri skupnom ažuriranju " + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Briše sve entitete s danim ID-evima koristeći predanu vezu i JDBC batch.
+     * ID-evi koji ne postoje u bazi se preskaču.
+     *
+     * @param conn veza na bazu podataka
+     * @param ids  ID-evi entiteta koje treba obrisati
+     * @return broj obrisanih redaka
+     * @throws DatabaseException ako dođe do greške prilikom brisanja
+     */
+    public int deleteAllById(Connection conn, Collection<Long> ids) throws DatabaseException {
+        if (ids == null || ids.isEmpty()) return 0;
+        int deleted = 0;
+        try (PreparedStatement ps = prepare(conn, getDeleteSql(), QueryType.BULK)) {
+            int pending = 0;
+            for (Long id : ids) {
+                ps.setLong(1, id);
+                ps.addBatch();
+                if (++pending == batchSize) {
+                    deleted += sum(ps.executeBatch());
+                    pending = 0;
+                }
+            }
+            if (pending > 0) deleted += sum(ps.executeBatch());
+            return deleted;
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri skupnom brisanju " + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Umeće entitet ili ažurira postojeći zapis s istim prirodnim ključem jednom naredbom
+     * ({@code MERGE INTO ... KEY(...)}, vidi {@link #getUpsertSql()}) i postavlja ID zapisa na
+     * entitet. Ako tablica nema prirodni ključ, entitet bez ID-a se sprema, a onaj s ID-em
+     * ažurira.
+     *
+     * @param conn   veza na bazu podataka
+     * @param entity entitet koji se umeće ili ažurira
+     * @throws DatabaseException ako dođe do greške prilikom upisa
+     */
+    public void upsert(Connection conn, T entity) throws DatabaseException {
+        String sql = getUpsertSql();
+        if (sql == null) {
+            if (entity.getId() == null) save(conn, entity);
+            else update(conn, entity);
+            return;
+        }
+        try (PreparedStatement ps = prepare(conn, sql, Statement.RETURN_GENERATED_KEYS, QueryType.LOOKUP)) {
+            bindInsert(ps, entity);
+            int affected = ps.executeUpdate();
+            if (affected != 1) throw new SQLException("Očekivan 1 red, utjecano: " + affected);
+            assignGeneratedKeys(ps, List.of(entity));
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri upisu " + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Umeće ili ažurira sve entitete po prirodnom ključu koristeći JDBC batch, jednu
+     * {@code MERGE} naredbu po entitetu, i postavlja ID-eve zapisa na entitete. Ako tablica
+     * nema prirodni ključ, entiteti bez ID-a se spremaju, a oni s ID-em ažuriraju.
+     *
+     * @param conn     veza na bazu podataka
+     * @param entities entiteti koji se umeću ili ažuriraju
+     * @throws DatabaseException ako dođe do greške prilikom upisa
+     */
+    public void upsertAll(Connection conn, List<T> entities) throws DatabaseException {
+        if (entities == null || entities.isEmpty()) return;
+        String sql = getUpsertSql();
+        if (sql == null) {
+            List<T> inserted = new ArrayList<>();
+            List<T> updated = new ArrayList<>();
+            for (T entity : entities) (entity.getId() == null ? inserted : updated).add(entity);
+            saveAll(conn, inserted);
+            updateAll(conn, updated);
+            return;
+        }
+        try (PreparedStatement ps = prepare(conn, sql, Statement.RETURN_GENERATED_KEYS, QueryType.BULK)) {
+            for (int from = 0; from < entities.size(); from += batchSize) {
+                List<T> chunk = entities.subList(from, Math.min(from + batchSize, entities.size()));
+                for (T entity : chunk) {
+                    bindInsert(ps, entity);
+                    ps.addBatch();
+                }
+                checkBatchCounts(ps.executeBatch());
+                assignGeneratedKeys(ps, chunk);
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri skupnom upisu " + type.getSimpleName(), e);
+        }
+    }
+
+    private void assignGeneratedKeys(PreparedStatement ps, List<T> chunk) throws SQLException {
+        try (ResultSet keys = ps.getGeneratedKeys()) {
+            for (T entity : chunk) {
+                if (keys.next()) {
+                    entity.setId(keys.getLong(1));
+                } else if (entity.getId() == null) {
+                    throw new SQLException("Primarni ključ nije vraćen iz baze");
+                }
+            }
+        }
+    }
+
+    private static void checkBatchCounts(int[] counts) throws SQLException {
+        for (int count : counts) {
+            if (count != 1 && count != Statement.SUCCESS_NO_INFO)
+                throw new SQLException("Očekivan 1 red, utjecano: " + count);
+        }
+    }
+
+    private static int sum(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            if (count > 0) total += count;
+        }
+        return total;
+    }
+
     /**
      * Dohvaća opcionalni entitet iz baze podataka prema zadanom ID-u.
      *
@@ -193,7 +450,7 @@ public abstract class DbDao<T extends Entity> {
      * @throws DatabaseException ako dođe do greške pri izvršenju upita ili pristupu bazi podataka
      */
     public Optional<T> findById(Connection conn, Long id) throws DatabaseException {
-        try (PreparedStatement ps = conn.prepareStatement(getSelectByIdSql())) {
+        try (PreparedStatement ps = prepare(conn, getSelectByIdSql(), QueryType.LOOKUP)) {
             ps.setLong(1, id);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) return Optional.of(mapRow(rs));
@@ -204,6 +461,69 @@ public abstract class DbDao<T extends Entity> {
         }
     }
 
+    /**
+     * Dohvaća entitete po skupu ID-eva i vraća mapu id -> entitet.
+     *
+     * @param ids skup ID-eva
+     * @return mapa ID -> entitet, prazna ako nema rezultata
+     * @throws DatabaseException ako dođe do greške pri pristupu bazi
+     */
+    public final Map<Long, T> findByIds(Set<Long> ids) throws DatabaseException {
+        if (ids == null || ids.isEmpty()) return Collections.emptyMap();
+        try (Connection conn = DbUtils.connectToDatabase()) {
+            return findByIds(conn, ids);
+        } catch (SQLException | DatabaseConnectionException e) {
+            throw new DatabaseException("Greška u dohvaćanju " + type.getSimpleName() + " po ID-evima", e);
+        }
+    }
+
+    /**
+     * Dohvaća entitete po skupu ID-eva koristeći predanu vezu. Svi ID-evi vežu se kao jedan
+     * parametar niza ({@code id = ANY(?)}), pa je SQL tekst isti za svaku veličinu skupa.
+     *
+     * @param conn veza na bazu podataka
+     * @param ids  skup ID-eva
+     * @return mapa ID -> entitet, prazna ako nema rezultata
+     * @throws SQLException ako dođe do greške pri pristupu bazi podataka
+     */
+    public Map<Long, T> findByIds(Connection conn, Set<Long> ids) throws SQLException {
+        if (ids == null || ids.isEmpty()) return Collections.emptyMap();
+        Map<Long, T> map = HashMap.newHashMap(ids.size());
+        forEachByIds(conn, getSelectByIdsSql(), ids, e -> map.put(e.getId(), e));
+        return map;
+    }
+
+    /**
+     * Izvršava upit s jednim parametrom niza ({@code kolona = ANY(?)}) za dani skup ID-eva.
+     * Veliki skupovi dijele se u dijelove od najviše {@link #MAX_IDS_PER_QUERY} ID-eva, a
+     * SQL tekst ostaje isti pa ga statement cache priprema samo jednom.
+     *
+     * @param conn     veza na bazu podataka
+     * @param sql      upit čiji je jedini parametar niz ID-eva
+     * @param ids      ID-evi koji se vežu u parametar
+     * @param consumer prima svaki redak mapiran s {@link #mapRow(ResultSet)}
+     * @throws SQLException ako dođe do greške pri pristupu bazi podataka
+     */
+    protected void forEachByIds(Connection conn, String sql, Collection<Long> ids, RowHandler<T> consumer)
+            throws SQLException {
+        if (ids == null || ids.isEmpty()) return;
+        List<Long> all = new ArrayList<>(ids);
+        try (PreparedStatement ps = prepare(conn, sql, QueryType.LIST)) {
+            for (int from = 0; from < all.size(); from += MAX_IDS_PER_QUERY) {
+                List<Long> chunk = all.subList(from, Math.min(from + MAX_IDS_PER_QUERY, all.size()));
+                Array array = conn.createArrayOf("BIGINT", chunk.toArray());
+                try {
+                    ps.setArray(1, array);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) consumer.accept(mapRow(rs));
+                    }
+                } finally {
+                    array.free();
+                }
+            }
+        }
+    }
+
     /**
      * Dohvaća listu svih objekata generičkog tipa T iz baze podataka.
      *
@@ -227,7 +547,7 @@ public abstract class DbDao<T extends Entity> {
      */
     public List<T> findAll(Connection conn) throws DatabaseException {
         List<T> results = new ArrayList<>();
-        try (PreparedStatement ps = conn.prepareStatement(getSelectAllSql());
+        try (PreparedStatement ps = prepare(conn, getSelectAllSql(), QueryType.LIST);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) results.add(mapRow(rs));
             return results;
@@ -236,6 +556,164 @@ public abstract class DbDao<T extends Entity> {
         }
     }
 
+    /**
+     * Dohvaća jednu stranicu zapisa poredanih po ID-u (keyset paginacija). Sljedeća stranica
+     * dohvaća se predajom ID-a posljednjeg zapisa prethodne stranice, pa cijena upita ne raste
+     * s rednim brojem stranice kao kod OFFSET paginacije.
+     *
+     * @param afterId ID posljednjeg zapisa prethodne stranice ili null za prvu stranicu
+     * @param limit   najveći broj zapisa na stranici
+     * @return zapisi s ID-em većim od afterId, najviše limit njih
+     * @throws DatabaseException ako dođe do greške pri pristupu bazi podataka
+     */
+    public final List<T> findPage(Long afterId, int limit) throws DatabaseException {
+        try (Connection conn = DbUtils.connectToDatabase()) {
+            return findPage(conn, afterId, limit);
+        } catch (SQLException | DatabaseConnectionException e) {
+            throw new DatabaseException("Greška pri dohvaćanju stranice objekata " + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Dohvaća jednu stranicu zapisa poredanih po ID-u koristeći predanu vezu.
+     *
+     * @param conn    veza na bazu podataka
+     * @param afterId ID posljednjeg zapisa prethodne stranice ili null za prvu stranicu
+     * @param limit   najveći broj zapisa na stranici
+     * @return zapisi s ID-em većim od afterId, najviše limit njih
+     * @throws DatabaseException ako dođe do greške pri pristupu bazi podataka
+     */
+    public List<T> findPage(Connection conn, Long afterId, int limit) throws DatabaseException {
+        if (limit < 1) throw new DatabaseException("Veličina stranice mora biti veća od 0");
+        List<T> results = new ArrayList<>(Math.min(limit, 1024));
+        try (PreparedStatement ps = prepare(conn, getSelectPageSql(), QueryType.LIST)) {
+            ps.setLong(1, afterId == null ? Long.MIN_VALUE : afterId);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) results.add(mapRow(rs));
+            }
+            return results;
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri dohvaćanju stranice objekata " + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Prolazi kroz sve zapise poredane po ID-u kursorom na strani baze i predaje ih potrošaču
+     * jedan po jedan, bez skupljanja u listu.
+     *
+     * @param conn      veza na bazu podataka
+     * @param fetchSize broj redaka koji driver dohvaća odjednom
+     * @param consumer  potrošač koji prima svaki zapis
+     * @throws DatabaseException ako dođe do greške pri pristupu bazi ili je baci potrošač
+     */
+    public void forEach(Connection conn, int fetchSize, RowConsumer<T> consumer) throws DatabaseException {
+        try (PreparedStatement ps = prepare(conn, getSelectAllSql(), QueryType.BULK)) {
+            ps.setFetchSize(fetchSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) consumer.accept(mapRow(rs));
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri prolasku kroz objekte " + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Vraća lijeni Stream svih zapisa poredanih po ID-u. Redci se čitaju kursorom tek kad ih
+     * Stream zatraži, pa potrošnja memorije ne ovisi o veličini tablice.
+     * Stream se mora zatvoriti (try-with-resources) kako bi se oslobodio kursor.
+     * Greške pri čitanju bacaju se kao {@link DatabaseStreamException}.
+     *
+     * @param conn      veza na bazu podataka, mora ostati otvorena dok se Stream koristi
+     * @param fetchSize broj redaka koji driver dohvaća odjednom
+     * @return Stream zapisa koji treba zatvoriti nakon upotrebe
+     * @throws DatabaseException ako se upit ne može izvršiti
+     */
+    public Stream<T> stream(Connection conn, int fetchSize) throws DatabaseException {
+        return stream(conn, getSelectAllSql(), ps -> { }, fetchSize);
+    }
+
+    /**
+     * Vraća lijeni Stream zapisa za proizvoljan SELECT upit ove tablice.
+     *
+     * @param conn      veza na bazu podataka
+     * @param sql       SELECT upit čiji se redci mapiraju s {@link #mapRow(ResultSet)}
+     * @param binder    postavlja parametre upita
+     * @param fetchSize broj redaka koji driver dohvaća odjednom
+     * @return Stream zapisa koji treba zatvoriti nakon upotrebe
+     * @throws DatabaseException ako se upit ne može izvršiti
+     */
+    protected Stream<T> stream(Connection conn, String sql, ParameterBinder binder, int fetchSize)
+            throws DatabaseException {
+        PreparedStatement ps = null;
+        try {
+            ps = prepare(conn, sql, QueryType.BULK);
+            ps.setFetchSize(fetchSize);
+            binder.bind(ps);
+            ResultSet rs = ps.executeQuery();
+            PreparedStatement statement = ps;
+            return StreamSupport.stream(new RowSpliterator(rs), false)
+                    .onClose(() -> {
+                        try (statement; rs) {
+                            // zatvaranje kursora i statementa
+                        } catch (SQLException e) {
+                            throw new DatabaseStreamException("Greška pri zatvaranju kursora " + type.getSimpleName(), e);
+                        }
+                    });
+        } catch (SQLException e) {
+            if (ps != null) {
+                try {
+                    ps.close();
+                } catch (SQLException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw new DatabaseException("Greška pri otvaranju kursora " + type.getSimpleName(), e);
+        }
+    }
+
+    private final class RowSpliterator extends Spliterators.AbstractSpliterator<T> {
+        private final ResultSet rs;
+
+        private RowSpliterator(ResultSet rs) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.rs = rs;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            try {
+                if (!rs.next()) return false;
+                action.accept(mapRow(rs));
+                return true;
+            } catch (SQLException e) {
+                throw new DatabaseStreamException("Greška pri čitanju " + type.getSimpleName(), e);
+            }
+        }
+    }
+
+    /** Postavlja parametre na PreparedStatement prije izvršavanja upita. */
+    @FunctionalInterface
+    protected interface ParameterBinder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    /** Obrađuje mapirani redak unutar upita po skupu ID-eva. */
+    @FunctionalInterface
+    protected interface RowHandler<R> {
+        void accept(R row) throws SQLException;
+    }
+
+    /**
+     * Funkcionalno sučelje za obradu redaka jedan po jedan, bez skupljanja u listu.
+     *
+     * @param <R> tip retka koji se obrađuje
+     */
+    @FunctionalInterface
+    public interface RowConsumer<R> {
+        void accept(R row) throws SQLException, DatabaseException;
+    }
+
     /**
      * Vraća SQL izraz za umetanje entiteta u bazu podataka.
      *
@@ -243,6 +721,19 @@ public abstract class DbDao<T extends Entity> {
      */
     protected abstract String getInsertSql();
 
+    /**
+     * Vraća {@code MERGE INTO ... KEY(...)} naredbu s prirodnim ključem tablice (npr. email
+     * freelancera) ili null ako ga tablica nema. Stupci i redoslijed parametara moraju biti
+     * jednaki kao u {@link #getInsertSql()} jer se parametri vežu s
+     * {@link #bindInsert(PreparedStatement, Entity)}. H2 za MERGE vraća generirani ključ i
+     * za umetnute i za ažurirane retke, pa ID dobiva svaki entitet.
+     *
+     * @return SQL izraz za MERGE ili null
+     */
+    protected String getUpsertSql() {
+        return null;
+    }
+
     /**
      * Vraća SQL izraz za ažuriranje entiteta u bazi podataka.
      *
@@ -270,4 +761,20 @@ public abstract class DbDao<T extends Entity> {
      * @return SQL izraz za SELECT svih zapisa
      */
     protected abstract String getSelectAllSql();
+
+    /**
+     * Vraća SQL izraz za dohvaćanje jedne stranice zapisa: prvi parametar je ID nakon kojeg
+     * stranica počinje, a drugi najveći broj redaka. Zapisi moraju biti poredani po ID-u.
+     *
+     * @return SQL izraz za SELECT jedne stranice
+     */
+    protected abstract String getSelectPageSql();
+
+    /**
+     * Vraća SQL izraz za dohvaćanje zapisa po skupu ID-eva, s jednim parametrom niza
+     * ({@code WHERE id = ANY(?)}).
+     *
+     * @return SQL izraz za SELECT po skupu ID-eva
+     */
+    protected abstract String getSelectByIdsSql();
 }
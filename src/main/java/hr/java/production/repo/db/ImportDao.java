@@ -0,0 +1,155 @@
+package hr.java.production.repo.db;
+
+import hr.java.production.exception.DatabaseException;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Pristup tablicama skupnog uvoza: {@code import_key} (vanjski ključ iz izvorne datoteke
+ * -> ID uvezenog zapisa) i {@code import_checkpoint} (broj obrađenih zapisa po izvoru).
+ */
+public final class ImportDao {
+    private static final String SELECT_KEYS_SQL =
+            """
+            SELECT external_key, entity_id
+            FROM import_key
+            WHERE kind = ? AND external_key = ANY(?)
+            """;
+
+    private static final String INSERT_KEY_SQL =
+            "INSERT INTO import_key(kind, external_key, entity_id) VALUES (?, ?, ?)";
+
+    private static final String SELECT_CHECKPOINT_SQL =
+            """
+            SELECT records_done, rejected
+            FROM import_checkpoint
+            WHERE source = ?
+            """;
+
+    private static final String MERGE_CHECKPOINT_SQL =
+            """
+            MERGE INTO import_checkpoint(source, kind, records_done, rejected, updated_on)
+            KEY(source)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+
+    /**
+     * Dohvaća ID-eve zapisa uvezenih pod danim vanjskim ključevima.
+     *
+     * @param conn veza na bazu podataka
+     * @param kind vrsta zapisa (npr. "FREELANCER")
+     * @param keys vanjski ključevi
+     * @return mapa vanjski ključ -> ID; ključevi koji nisu uvezeni nisu u mapi
+     * @throws DatabaseException ako dođe do greške pri pristupu bazi podataka
+     */
+    public Map<String, Long> findKeys(Connection conn, String kind, Collection<String> keys) throws DatabaseException {
+        if (keys.isEmpty()) return Map.of();
+        Map<String, Long> result = new HashMap<>(keys.size() * 2);
+        List<String> all = new ArrayList<>(keys);
+        try (PreparedStatement ps = DbDao.prepare(conn, SELECT_KEYS_SQL, QueryType.LIST)) {
+            for (int from = 0; from < all.size(); from += DbDao.MAX_IDS_PER_QUERY) {
+                List<String> chunk = all.subList(from, Math.min(from + DbDao.MAX_IDS_PER_QUERY, all.size()));
+                Array array = conn.createArrayOf("VARCHAR", chunk.toArray());
+                try {
+                    ps.setString(1, kind);
+                    ps.setArray(2, array);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) result.put(rs.getString(1), rs.getLong(2));
+                    }
+                } finally {
+                    array.free();
+                }
+            }
+            return result;
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri dohvaćanju ključeva uvoza", e);
+        }
+    }
+
+    /**
+     * Sprema vanjske ključeve uvezenih zapisa u jednom batchu.
+     *
+     * @param conn veza na bazu podataka
+     * @param kind vrsta zapisa
+     * @param keys mapa vanjski ključ -> ID uvezenog zapisa
+     * @throws DatabaseException ako dođe do greške pri pristupu bazi podataka
+     */
+    public void saveKeys(Connection conn, String kind, Map<String, Long> keys) throws DatabaseException {
+        if (keys.isEmpty()) return;
+        try (PreparedStatement ps = DbDao.prepare(conn, INSERT_KEY_SQL, QueryType.BULK)) {
+            for (Map.Entry<String, Long> e : keys.entrySet()) {
+                ps.setString(1, kind);
+                ps.setString(2, e.getKey());
+                ps.setLong(3, e.getValue());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri spremanju ključeva uvoza", e);
+        }
+    }
+
+    /**
+     * Dohvaća checkpoint uvoza za dani izvor.
+     *
+     * @param conn   veza na bazu podataka
+     * @param source naziv izvora
+     * @return checkpoint ili prazno ako izvor još nije uvožen
+     * @throws DatabaseException ako dođe do greške pri pristupu bazi podataka
+     */
+    public Optional<Checkpoint> findCheckpoint(Connection conn, String source) throws DatabaseException {
+        try (PreparedStatement ps = DbDao.prepare(conn, SELECT_CHECKPOINT_SQL, QueryType.LOOKUP)) {
+            ps.setString(1, source);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return Optional.empty();
+                return Optional.of(new Checkpoint(rs.getLong(1), rs.getLong(2)));
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri dohvaćanju checkpointa uvoza", e);
+        }
+    }
+
+    /**
+     * Sprema checkpoint uvoza; poziva se u istoj transakciji kao i uvoz dijela zapisa.
+     *
+     * @param conn       veza na bazu podataka
+     * @param source     naziv izvora
+     * @param kind       vrsta zapisa
+     * @param checkpoint stanje nakon obrađenog dijela
+     * @throws DatabaseException ako dođe do greške pri pristupu bazi podataka
+     */
+    public void saveCheckpoint(Connection conn, String source, String kind, Checkpoint checkpoint)
+            throws DatabaseException {
+        try (PreparedStatement ps = DbDao.prepare(conn, MERGE_CHECKPOINT_SQL, QueryType.LOOKUP)) {
+            ps.setString(1, source);
+            ps.setString(2, kind);
+            ps.setLong(3, checkpoint.recordsDone());
+            ps.setLong(4, checkpoint.rejected());
+            ps.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri spremanju checkpointa uvoza", e);
+        }
+    }
+
+    /**
+     * Stanje uvoza jednog izvora.
+     *
+     * @param recordsDone broj obrađenih zapisa (uvezenih, preskočenih i odbijenih)
+     * @param rejected    broj odbijenih zapisa
+     */
+    public record Checkpoint(long recordsDone, long rejected) {
+    }
+}
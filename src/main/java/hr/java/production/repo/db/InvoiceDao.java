@@ -1,10 +1,21 @@
 package hr.java.production.repo.db;
 
+import hr.java.production.exception.DatabaseException;
+import hr.java.production.model.Address;
 import hr.java.production.model.Freelancer;
 import hr.java.production.model.Invoice;
+import hr.java.production.model.Payment;
 
+import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Klasa InvoiceDao omogućuje pristup i upravljanje podacima o računima u bazi
@@ -12,6 +23,109 @@ import java.time.LocalDate;
  * implementacije za umetanje, ažuriranje, brisanje i dohvaćanje računa
  */
 public final class InvoiceDao extends DbDao<Invoice> {
+    private static final String SELECT_ALL_WITH_REFERENCES_SQL =
+            """
+            SELECT
+              i.id,
+              i.freelancer_id,
+              i.invoice_date,
+              i.due_date,
+              i.total_amount,
+              i.line_count,
+              f.first_name,
+              f.last_name,
+              f.email,
+              f.phone_number,
+              f.address_id,
+              f.business_name,
+              f.business_id_no,
+              f.bank_account,
+              f.active,
+              a.street,
+              a.house_number,
+              a.city,
+              a.postal_code,
+              p.id AS payment_id,
+              p.amount,
+              p.paid_on,
+              p.transaction_id
+            FROM invoice i
+            JOIN freelancer f ON f.id = i.freelancer_id
+            JOIN address a    ON a.id = f.address_id
+            LEFT JOIN payment p ON p.invoice_id = i.id
+            ORDER BY i.id
+            """;
+
+    private static final String REFRESH_TOTALS_SQL =
+            """
+            UPDATE invoice i SET
+              total_amount = COALESCE((SELECT SUM(s.unit_fee * s.quantity) FROM service s WHERE s.invoice_id = i.id), 0),
+              line_count   = (SELECT COUNT(*) FROM service s WHERE s.invoice_id = i.id)
+            WHERE i.id = ANY(?)
+            """;
+
+    private static final String SELECT_INCONSISTENT_TOTALS_SQL =
+            """
+            SELECT i.id
+            FROM invoice i
+            LEFT JOIN (
+              SELECT invoice_id, SUM(unit_fee * quantity) AS service_total, COUNT(*) AS service_count
+              FROM service
+              GROUP BY invoice_id
+            ) s ON s.invoice_id = i.id
+            WHERE i.total_amount <> COALESCE(s.service_total, 0)
+               OR i.line_count   <> COALESCE(s.service_count, 0)
+            ORDER BY i.id
+            """;
+
+    private static final String SELECT_DUE_STATES_SQL =
+            """
+            SELECT
+              i.id,
+              i.due_date,
+              EXISTS (SELECT 1 FROM payment p WHERE p.invoice_id = i.id) AS paid
+            FROM invoice i
+            """;
+
+    private static final String SELECT_FILTERED_SQL =
+            """
+            SELECT
+              id,
+              freelancer_id,
+              invoice_date,
+              due_date,
+              total_amount,
+              line_count
+            FROM invoice
+            WHERE (CAST(? AS DATE) IS NULL OR invoice_date >= ?)
+              AND (CAST(? AS DATE) IS NULL OR invoice_date <= ?)
+              AND (CAST(? AS BIGINT) IS NULL OR freelancer_id = ?)
+            ORDER BY id
+            """;
+
+    private static final String DELETE_RETURNING_SQL =
+            """
+            SELECT
+              id,
+              freelancer_id,
+              invoice_date,
+              due_date,
+              total_amount,
+              line_count
+            FROM OLD TABLE (DELETE FROM invoice WHERE id = ?)
+            """;
+
+    private static final String DELETE_ALL_RETURNING_SQL =
+            """
+            SELECT
+              id,
+              freelancer_id,
+              invoice_date,
+              due_date,
+              total_amount,
+              line_count
+            FROM OLD TABLE (DELETE FROM invoice WHERE id = ANY(?))
+            """;
 
     public InvoiceDao() {
         super(Invoice.class);
@@ -22,12 +136,15 @@ public final class InvoiceDao extends DbDao<Invoice> {
         ps.setLong(1, inv.getFreelancerId());
         ps.setDate(2, Date.valueOf(inv.getInvoiceDate()));
         ps.setDate(3, Date.valueOf(inv.getDueDate()));
+        // zbroj se računa iz stavki koje se upisuju u istoj transakciji
+        ps.setBigDecimal(4, inv.calculateTotalCost());
+        ps.setInt(5, inv.getServices() == null ? 0 : inv.getServices().size());
     }
 
     @Override
     protected void bindUpdate(PreparedStatement ps, Invoice inv) throws SQLException {
         bindInsert(ps, inv);
-        ps.setLong(4, inv.getId());
+        ps.setLong(6, inv.getId());
     }
 
     @Override
@@ -44,17 +161,266 @@ public final class InvoiceDao extends DbDao<Invoice> {
                 .freelancer(freelancerRef)
                 .invoiceDate(invDate)
                 .dueDate(dueDate)
+                .totals(rs.getBigDecimal("total_amount"), rs.getInt("line_count"))
+                .build();
+    }
+
+    /**
+     * Prolazi kroz sve račune jednim JOIN upitom koji uz račun dohvaća freelancera, njegovu
+     * adresu i uplatu. Retci se predaju potrošaču redom po ID-u računa, bez skupljanja u listu.
+     * Svi računi istog freelancera dijele istu instancu Freelancer (i Address).
+     *
+     * @param conn     veza na bazu podataka
+     * @param consumer potrošač koji prima račun s referencama i uplatu (ili null)
+     * @throws DatabaseException ako dođe do greške pri izvršavanju upita
+     */
+    public void forEachWithReferences(Connection conn, RowConsumer<InvoiceRow> consumer) throws DatabaseException {
+        Map<Long, Freelancer> freelancers = new HashMap<>();
+        Map<Long, Address> addresses = new HashMap<>();
+        try (PreparedStatement ps = prepare(conn, SELECT_ALL_WITH_REFERENCES_SQL, QueryType.BULK);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                Invoice invoice = mapRow(rs);
+
+                long addressId = rs.getLong("address_id");
+                Address address = addresses.get(addressId);
+                if (address == null) {
+                    address = mapAddress(rs, addressId);
+                    addresses.put(addressId, address);
+                }
+
+                long freelancerId = invoice.getFreelancerId();
+                Freelancer freelancer = freelancers.get(freelancerId);
+                if (freelancer == null) {
+                    freelancer = mapFreelancer(rs, freelancerId, address);
+                    freelancers.put(freelancerId, freelancer);
+                }
+                invoice.setFreelancer(freelancer);
+
+                consumer.accept(new InvoiceRow(invoice, mapPayment(rs, invoice)));
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri dohvaćanju računa s referencama", e);
+        }
+    }
+
+    /**
+     * Briše račun i vraća njegovo stanje prije brisanja jednom naredbom
+     * ({@code SELECT ... FROM OLD TABLE (DELETE ...)}). Stavke i uplata računa brišu se
+     * kaskadno (strani ključevi {@code ON DELETE CASCADE}).
+     *
+     * @param conn veza na bazu podataka
+     * @param id   ID računa
+     * @return obrisani račun ili prazno ako račun ne postoji
+     * @throws DatabaseException ako dođe do greške pri brisanju
+     */
+    public Optional<Invoice> deleteReturning(Connection conn, long id) throws DatabaseException {
+        try (PreparedStatement ps = prepare(conn, DELETE_RETURNING_SQL, QueryType.LOOKUP)) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? Optional.of(mapRow(rs)) : Optional.empty();
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri brisanju računa ID=" + id, e);
+        }
+    }
+
+    /**
+     * Briše račune s danim ID-evima (s kaskadnim brisanjem stavki i uplata) i vraća obrisane
+     * račune. Briše se jednom naredbom po {@link #MAX_IDS_PER_QUERY} ID-eva; ID-evi koji ne
+     * postoje se preskaču.
+     *
+     * @param conn veza na bazu podataka
+     * @param ids  ID-evi računa
+     * @return obrisani računi
+     * @throws DatabaseException ako dođe do greške pri brisanju
+     */
+    public List<Invoice> deleteAllReturning(Connection conn, Collection<Long> ids) throws DatabaseException {
+        if (ids == null || ids.isEmpty()) return List.of();
+        List<Long> all = new ArrayList<>(ids);
+        List<Invoice> deleted = new ArrayList<>(all.size());
+        try (PreparedStatement ps = prepare(conn, DELETE_ALL_RETURNING_SQL, QueryType.BULK)) {
+            for (int from = 0; from < all.size(); from += MAX_IDS_PER_QUERY) {
+                List<Long> chunk = all.subList(from, Math.min(from + MAX_IDS_PER_QUERY, all.size()));
+                Array array = conn.createArrayOf("BIGINT", chunk.toArray());
+                try {
+                    ps.setArray(1, array);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) deleted.add(mapRow(rs));
+                    }
+                } finally {
+                    array.free();
+                }
+            }
+            return deleted;
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri skupnom brisanju računa", e);
+        }
+    }
+
+    /**
+     * Vraća lijeni Stream računa poredanih po ID-u, filtriranih po datumu računa i freelanceru.
+     * Redci se čitaju kursorom, pa potrošnja memorije ne ovisi o broju računa. Stream se mora
+     * zatvoriti nakon upotrebe.
+     *
+     * @param conn         veza na bazu podataka, mora ostati otvorena dok se Stream koristi
+     * @param from         najraniji datum računa (uključivo) ili null
+     * @param to           najkasniji datum računa (uključivo) ili null
+     * @param freelancerId ID freelancera ili null za sve freelancere
+     * @param fetchSize    broj redaka koji driver dohvaća odjednom
+     * @return Stream računa s referencom na freelancera
+     * @throws DatabaseException ako se upit ne može izvršiti
+     */
+    public Stream<Invoice> stream(Connection conn, LocalDate from, LocalDate to, Long freelancerId, int fetchSize)
+            throws DatabaseException {
+        Date fromDate = from == null ? null : Date.valueOf(from);
+        Date toDate = to == null ? null : Date.valueOf(to);
+        return stream(conn, SELECT_FILTERED_SQL, ps -> {
+            ps.setDate(1, fromDate);
+            ps.setDate(2, fromDate);
+            ps.setDate(3, toDate);
+            ps.setDate(4, toDate);
+            ps.setObject(5, freelancerId, Types.BIGINT);
+            ps.setObject(6, freelancerId, Types.BIGINT);
+        }, fetchSize);
+    }
+
+    /**
+     * Ponovno izračunava spremljeni zbroj i broj stavki danih računa iz tablice stavki. Poziva
+     * se u istoj transakciji nakon upisa stavki mimo {@link #save}/{@link #update} računa.
+     *
+     * @param conn       veza na bazu podataka
+     * @param invoiceIds ID-evi računa
+     * @return broj ažuriranih računa
+     * @throws DatabaseException ako dođe do greške pri ažuriranju
+     */
+    public int refreshTotals(Connection conn, Collection<Long> invoiceIds) throws DatabaseException {
+        if (invoiceIds == null || invoiceIds.isEmpty()) return 0;
+        List<Long> all = new ArrayList<>(invoiceIds);
+        int updated = 0;
+        try (PreparedStatement ps = prepare(conn, REFRESH_TOTALS_SQL, QueryType.BULK)) {
+            for (int from = 0; from < all.size(); from += MAX_IDS_PER_QUERY) {
+                List<Long> chunk = all.subList(from, Math.min(from + MAX_IDS_PER_QUERY, all.size()));
+                Array array = conn.createArrayOf("BIGINT", chunk.toArray());
+                try {
+                    ps.setArray(1, array);
+                    updated += ps.executeUpdate();
+                } finally {
+                    array.free();
+                }
+            }
+            return updated;
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri izračunu zbroja stavki računa", e);
+        }
+    }
+
+    /**
+     * Vraća ID-eve računa čiji spremljeni zbroj ili broj stavki ne odgovara stavkama.
+     *
+     * @param conn veza na bazu podataka
+     * @return ID-evi neusklađenih računa, poredani po ID-u
+     * @throws DatabaseException ako dođe do greške pri izvršavanju upita
+     */
+    public List<Long> findInconsistentTotals(Connection conn) throws DatabaseException {
+        List<Long> ids = new ArrayList<>();
+        try (PreparedStatement ps = prepare(conn, SELECT_INCONSISTENT_TOTALS_SQL, QueryType.BULK);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) ids.add(rs.getLong(1));
+            return ids;
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri provjeri zbroja stavki računa", e);
+        }
+    }
+
+    /**
+     * Prolazi kroz sve račune i za svaki predaje rok plaćanja i je li plaćen, bez
+     * učitavanja ostalih podataka računa.
+     *
+     * @param conn     veza na bazu podataka
+     * @param consumer potrošač koji prima stanje svakog računa
+     * @throws DatabaseException ako dođe do greške pri izvršavanju upita
+     */
+    public void forEachDueState(Connection conn, RowConsumer<DueState> consumer) throws DatabaseException {
+        try (PreparedStatement ps = prepare(conn, SELECT_DUE_STATES_SQL, QueryType.BULK);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                consumer.accept(new DueState(
+                        rs.getLong("id"),
+                        rs.getDate("due_date").toLocalDate(),
+                        rs.getBoolean("paid")));
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri dohvaćanju rokova plaćanja računa", e);
+        }
+    }
+
+    private static Address mapAddress(ResultSet rs, long addressId) throws SQLException {
+        return new Address.Builder()
+                .id(addressId)
+                .street(rs.getString("street"))
+                .houseNumber(rs.getString("house_number"))
+                .city(rs.getString("city"))
+                .postalCode(rs.getString("postal_code"))
+                .build();
+    }
+
+    private static Freelancer mapFreelancer(ResultSet rs, long freelancerId, Address address) throws SQLException {
+        return new Freelancer.Builder()
+                .id(freelancerId)
+                .firstName(rs.getString("first_name"))
+                .lastName(rs.getString("last_name"))
+                .email(rs.getString("email"))
+                .phoneNumber(rs.getString("phone_number"))
+                .address(address)
+                .businessName(rs.getString("business_name"))
+                .businessIdentificationNumber(rs.getString("business_id_no"))
+                .bankAccountNumber(rs.getString("bank_account"))
+                .active(rs.getBoolean("active"))
+                .build();
+    }
+
+    private static Payment mapPayment(ResultSet rs, Invoice invoice) throws SQLException {
+        long paymentId = rs.getLong("payment_id");
+        if (rs.wasNull()) return null;
+        return new Payment.Builder()
+                .id(paymentId)
+                .invoice(invoice)
+                .amount(rs.getBigDecimal("amount"))
+                .paidOn(rs.getTimestamp("paid_on").toLocalDateTime())
+                .transactionId(rs.getString("transaction_id"))
                 .build();
     }
 
+    /**
+     * Redak JOIN upita: račun s hidriranim freelancerom i adresom te pripadajuća uplata.
+     *
+     * @param invoice račun
+     * @param payment uplata za račun ili null ako račun nije plaćen
+     */
+    public record InvoiceRow(Invoice invoice, Payment payment) {
+    }
+
+    /**
+     * Rok plaćanja i stanje plaćenosti jednog računa.
+     *
+     * @param invoiceId ID računa
+     * @param dueDate   rok plaćanja
+     * @param paid      postoji li uplata za račun
+     */
+    public record DueState(long invoiceId, LocalDate dueDate, boolean paid) {
+    }
+
     @Override
     protected String getInsertSql() {
         return """
             INSERT INTO invoice (
               freelancer_id,
               invoice_date,
-              due_date
-            ) VALUES (?, ?, ?)
+              due_date,
+              total_amount,
+              line_count
+            ) VALUES (?, ?, ?, ?, ?)
             """;
     }
 
@@ -64,7 +430,9 @@ public final class InvoiceDao extends DbDao<Invoice> {
             UPDATE invoice SET
               freelancer_id = ?,
               invoice_date  = ?,
-              due_date      = ?
+              due_date      = ?,
+              total_amount  = ?,
+              line_count    = ?
             WHERE id = ?
             """;
     }
@@ -81,7 +449,9 @@ public final class InvoiceDao extends DbDao<Invoice> {
               id,
               freelancer_id,
               invoice_date,
-              due_date
+              due_date,
+              total_amount,
+              line_count
             FROM invoice
             WHERE id = ?
             """;
@@ -94,9 +464,43 @@ public final class InvoiceDao extends DbDao<Invoice> {
               id,
               freelancer_id,
               invoice_date,
-              due_date
+              due_date,
+              total_amount,
+              line_count
+            FROM invoice
+            ORDER BY id
+            """;
+    }
+
+    @Override
+    protected String getSelectPageSql() {
+        return """
+            SELECT
+              id,
+              freelancer_id,
+              invoice_date,
+              due_date,
+              total_amount,
+              line_count
             FROM invoice
+            WHERE id > ?
             ORDER BY id
+            FETCH FIRST ? ROWS ONLY
+            """;
+    }
+
+    @Override
+    protected String getSelectByIdsSql() {
+        return """
+            SELECT
+              id,
+              freelancer_id,
+              invoice_date,
+              due_date,
+              total_amount,
+              line_count
+            FROM invoice
+            WHERE id = ANY(?)
             """;
     }
 }
@@ -10,7 +10,6 @@ import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public final class PaymentDao extends DbDao<Payment> {
     private static final String SELECT_BY_INVOICE_ID_SQL =
@@ -26,6 +25,21 @@ public final class PaymentDao extends DbDao<Payment> {
                 ORDER BY id
                 """;
 
+    private static final String SELECT_BY_INVOICE_IDS_SQL =
+                """
+                SELECT
+                  id,
+                  invoice_id,
+                  amount,
+                  paid_on,
+                  transaction_id
+                FROM payment
+                WHERE invoice_id = ANY(?)
+                """;
+
+    private static final String SELECT_TRANSACTION_IDS_SQL =
+                "SELECT transaction_id FROM payment WHERE transaction_id = ANY(?)";
+
     private static final String DELETE_BY_INVOICE_ID_SQL = "DELETE FROM payment WHERE invoice_id = ?";
 
 
@@ -67,7 +81,7 @@ public final class PaymentDao extends DbDao<Payment> {
     }
 
     public Optional<Payment> findByInvoiceId(Connection conn, long invoiceId) throws SQLException {
-        try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_INVOICE_ID_SQL)) {
+        try (PreparedStatement ps = prepare(conn, SELECT_BY_INVOICE_ID_SQL, QueryType.LOOKUP)) {
             ps.setLong(1, invoiceId);
             try (ResultSet rs = ps.executeQuery()) {
                 if (!rs.next()) return Optional.empty();
@@ -97,7 +111,7 @@ public final class PaymentDao extends DbDao<Payment> {
     }
 
     public void deleteByInvoiceId(Connection conn, long invoiceId) throws DatabaseException {
-        try (PreparedStatement ps = conn.prepareStatement(DELETE_BY_INVOICE_ID_SQL)) {
+        try (PreparedStatement ps = prepare(conn, DELETE_BY_INVOICE_ID_SQL, QueryType.LOOKUP)) {
             ps.setLong(1, invoiceId);
             ps.executeUpdate();
         } catch (SQLException e) {
@@ -118,26 +132,14 @@ public final class PaymentDao extends DbDao<Payment> {
     public Map<Long, Payment> findByInvoiceIds(Connection conn, Set<Long> invoiceIds) throws SQLException {
         if (invoiceIds == null || invoiceIds.isEmpty()) return Collections.emptyMap();
 
-        String placeholders = invoiceIds.stream().map(x -> "?").collect(Collectors.joining(","));
-        String sql = "SELECT id, invoice_id, amount, paid_on, transaction_id " +
-                "FROM payment WHERE invoice_id IN (" + placeholders + ")";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            int i = 1;
-            for (Long id : invoiceIds) ps.setLong(i++, id);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                Map<Long, Payment> map = new HashMap<>();
-                while (rs.next()) {
-                    Payment p = mapRow(rs);
-                    Long invId = p.getInvoice().getId();
-                    if (map.putIfAbsent(invId, p) != null) {
-                        throw new SQLException("Više uplata pronađeno za invoice_id=" + invId);
-                    }
-                }
-                return map;
+        Map<Long, Payment> map = HashMap.newHashMap(invoiceIds.size());
+        forEachByIds(conn, SELECT_BY_INVOICE_IDS_SQL, invoiceIds, p -> {
+            Long invId = p.getInvoice().getId();
+            if (map.putIfAbsent(invId, p) != null) {
+                throw new SQLException("Više uplata pronađeno za invoice_id=" + invId);
             }
-        }
+        });
+        return map;
     }
 
     public Map<Long, Payment> findByInvoiceIds(Set<Long> invoiceIds) throws DatabaseException {
@@ -150,6 +152,39 @@ public final class PaymentDao extends DbDao<Payment> {
         }
     }
 
+    /**
+     * Vraća one od danih ID-eva transakcija koji već postoje u tablici uplata, npr. da bi se
+     * pri uvozu razlikovale nove uplate od onih koje će {@link #upsertAll} spojiti s postojećima.
+     *
+     * @param conn           veza na bazu podataka
+     * @param transactionIds ID-evi transakcija za provjeru
+     * @return postojeći ID-evi transakcija
+     * @throws DatabaseException ako dođe do greške pri pristupu bazi podataka
+     */
+    public Set<String> findExistingTransactionIds(Connection conn, Collection<String> transactionIds)
+            throws DatabaseException {
+        if (transactionIds.isEmpty()) return Set.of();
+        Set<String> result = new HashSet<>();
+        List<String> all = new ArrayList<>(transactionIds);
+        try (PreparedStatement ps = prepare(conn, SELECT_TRANSACTION_IDS_SQL, QueryType.LIST)) {
+            for (int from = 0; from < all.size(); from += MAX_IDS_PER_QUERY) {
+                List<String> chunk = all.subList(from, Math.min(from + MAX_IDS_PER_QUERY, all.size()));
+                Array array = conn.createArrayOf("VARCHAR", chunk.toArray());
+                try {
+                    ps.setArray(1, array);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) result.add(rs.getString(1));
+                    }
+                } finally {
+                    array.free();
+                }
+            }
+            return result;
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri dohvaćanju ID-eva transakcija uplata", e);
+        }
+    }
+
     @Override
     protected String getInsertSql() {
         return """
@@ -162,6 +197,20 @@ public final class PaymentDao extends DbDao<Payment> {
                 """;
     }
 
+    /** Prirodni ključ uplate je ID transakcije (jedinstven od V4). Uplata bez njega se uvijek umeće. */
+    @Override
+    protected String getUpsertSql() {
+        return """
+                MERGE INTO payment (
+                  invoice_id,
+                  amount,
+                  paid_on,
+                  transaction_id
+                ) KEY(transaction_id)
+                VALUES (?, ?, ?, ?)
+                """;
+    }
+
     @Override
     protected String getUpdateSql() {
         return """
@@ -207,4 +256,33 @@ public final class PaymentDao extends DbDao<Payment> {
                 """;
     }
 
+    @Override
+    protected String getSelectPageSql() {
+        return """
+                SELECT
+                  id,
+                  invoice_id,
+                  amount,
+                  paid_on,
+                  transaction_id
+                FROM payment
+                WHERE id > ?
+                ORDER BY id
+                FETCH FIRST ? ROWS ONLY
+                """;
+    }
+
+    @Override
+    protected String getSelectByIdsSql() {
+        return """
+                SELECT
+                  id,
+                  invoice_id,
+                  amount,
+                  paid_on,
+                  transaction_id
+                FROM payment
+                WHERE id = ANY(?)
+                """;
+    }
 }
@@ -0,0 +1,59 @@
+package hr.java.production.repo.db;
+
+import hr.java.production.exception.DatabaseConnectionException;
+import hr.java.production.util.DbUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Vrsta DAO operacije prema očekivanom trajanju. Svaka vrsta ima vlastito vremensko
+ * ograničenje izvršavanja naredbe ({@link java.sql.Statement#setQueryTimeout(int)}) iz
+ * parametara {@code query.timeout.*}, kako jedan patološki upit ili čekanje na zaključavanje
+ * ne bi zauvijek blokirali poziv. Vrijednost 0 isključuje ograničenje.
+ */
+public enum QueryType {
+    /** Dohvat, izmjena ili brisanje jednog retka po ključu. */
+    LOOKUP("query.timeout.lookupSeconds", 5),
+    /** Dohvat liste (cijela tablica, stranica, skup ID-eva, agregati). */
+    LIST("query.timeout.listSeconds", 30),
+    /** Skupne izmjene i prolazak kroz cijelu tablicu kursorom. */
+    BULK("query.timeout.bulkSeconds", 300);
+
+    private static final Logger log = LoggerFactory.getLogger(QueryType.class);
+
+    private final String key;
+    private final int defaultSeconds;
+    private volatile int timeoutSeconds = -1;
+
+    QueryType(String key, int defaultSeconds) {
+        this.key = key;
+        this.defaultSeconds = defaultSeconds;
+    }
+
+    /**
+     * Vraća vremensko ograničenje naredbe za ovu vrstu operacije.
+     *
+     * @return ograničenje u sekundama, 0 ako nije ograničeno
+     */
+    public int getTimeoutSeconds() {
+        int seconds = timeoutSeconds;
+        if (seconds < 0) {
+            seconds = load();
+            timeoutSeconds = seconds;
+        }
+        return seconds;
+    }
+
+    private int load() {
+        String value = null;
+        try {
+            value = DbUtils.getProperty(key, String.valueOf(defaultSeconds));
+            int seconds = Integer.parseInt(value);
+            if (seconds >= 0) return seconds;
+        } catch (DatabaseConnectionException | NumberFormatException e) {
+            log.debug("Failed to read {}", key, e);
+        }
+        log.warn("Invalid {}={}, using {} s", key, value, defaultSeconds);
+        return defaultSeconds;
+    }
+}
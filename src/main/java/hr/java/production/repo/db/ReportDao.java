@@ -0,0 +1,295 @@
+package hr.java.production.repo.db;
+
+import hr.java.production.exception.DatabaseException;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Izvještaji nad računima i uplatama. Grupiranje i zbrajanje rade se u bazi jednim upitom po
+ * izvještaju, nad indeksima po datumu računa i datumu uplate (migracija V6), a rezultat su
+ * sažeti retci bez hidracije entiteta. Iznosi računa čitaju se iz spremljenog zbroja
+ * ({@code invoice.total_amount}), pa izvještaji osim najprodavanijih usluga ne čitaju stavke.
+ */
+public final class ReportDao {
+    private static final String PAYOUTS_SQL =
+            """
+            SELECT
+              a.freelancer_id,
+              f.first_name,
+              f.last_name,
+              a.period_start,
+              a.payment_count,
+              a.amount
+            FROM (
+              SELECT
+                i.freelancer_id,
+                CAST(DATE_TRUNC(%1$s, p.paid_on) AS DATE) AS period_start,
+                COUNT(*)                                  AS payment_count,
+                SUM(p.amount)                             AS amount
+              FROM payment p
+              JOIN invoice i ON i.id = p.invoice_id
+              WHERE p.paid_on >= ? AND p.paid_on < ?
+                AND (CAST(? AS BIGINT) IS NULL OR i.freelancer_id = ?)
+              GROUP BY i.freelancer_id, CAST(DATE_TRUNC(%1$s, p.paid_on) AS DATE)
+            ) a
+            JOIN freelancer f ON f.id = a.freelancer_id
+            ORDER BY a.period_start, f.last_name, f.first_name, a.freelancer_id
+            """;
+
+    private static final String INVOICED_VS_PAID_SQL =
+            """
+            SELECT
+              DATE_TRUNC(%1$s, i.invoice_date)                           AS period_start,
+              COUNT(*)                                                   AS invoice_count,
+              COALESCE(SUM(i.total_amount), 0)                           AS invoiced,
+              COUNT(p.id)                                                AS paid_count,
+              COALESCE(SUM(p.amount), 0)                                 AS paid,
+              COALESCE(SUM(CASE WHEN p.id IS NULL THEN i.total_amount END), 0) AS unpaid
+            FROM invoice i
+            LEFT JOIN payment p ON p.invoice_id = i.id
+            WHERE i.invoice_date BETWEEN ? AND ?
+              AND (CAST(? AS BIGINT) IS NULL OR i.freelancer_id = ?)
+            GROUP BY DATE_TRUNC(%1$s, i.invoice_date)
+            ORDER BY period_start
+            """;
+
+    private static final String TOP_SERVICES_SQL =
+            """
+            SELECT
+              s.service_name,
+              COUNT(DISTINCT s.invoice_id)  AS invoice_count,
+              SUM(s.quantity)               AS quantity,
+              SUM(s.unit_fee * s.quantity)  AS revenue
+            FROM invoice i
+            JOIN service s ON s.invoice_id = i.id
+            WHERE i.invoice_date BETWEEN ? AND ?
+              AND (CAST(? AS BIGINT) IS NULL OR i.freelancer_id = ?)
+            GROUP BY s.service_name
+            ORDER BY revenue DESC, s.service_name
+            FETCH FIRST ? ROWS ONLY
+            """;
+
+    private static final String DAYS_TO_PAY_SQL =
+            """
+            SELECT
+              DATE_TRUNC(%1$s, i.invoice_date)                                  AS period_start,
+              COUNT(*)                                                          AS paid_count,
+              AVG(CAST(DATEDIFF(DAY, i.invoice_date, p.paid_on) AS DOUBLE PRECISION)) AS average_days,
+              MAX(DATEDIFF(DAY, i.invoice_date, p.paid_on))                     AS max_days,
+              COUNT(CASE WHEN CAST(p.paid_on AS DATE) > i.due_date THEN 1 END) AS late_count
+            FROM invoice i
+            JOIN payment p ON p.invoice_id = i.id
+            WHERE i.invoice_date BETWEEN ? AND ?
+              AND (CAST(? AS BIGINT) IS NULL OR i.freelancer_id = ?)
+            GROUP BY DATE_TRUNC(%1$s, i.invoice_date)
+            ORDER BY period_start
+            """;
+
+    /* Tekst upita po razdoblju se slaže jednom, pa je po razdoblju uvijek isti (cache naredbi u poolu). */
+    private static final Map<Granularity, String> PAYOUTS = byGranularity(PAYOUTS_SQL);
+    private static final Map<Granularity, String> INVOICED_VS_PAID = byGranularity(INVOICED_VS_PAID_SQL);
+    private static final Map<Granularity, String> DAYS_TO_PAY = byGranularity(DAYS_TO_PAY_SQL);
+
+    /**
+     * Isplate po freelanceru i razdoblju, prema datumu uplate.
+     *
+     * @param conn         veza na bazu podataka
+     * @param from         prvi dan (uključivo)
+     * @param to           zadnji dan (uključivo)
+     * @param freelancerId ID freelancera ili null za sve
+     * @param granularity  razdoblje grupiranja
+     * @return retci poredani po razdoblju i freelanceru
+     * @throws DatabaseException ako dođe do greške pri izvršavanju upita
+     */
+    public List<FreelancerPayout> findPayouts(Connection conn, LocalDate from, LocalDate to, Long freelancerId,
+                                              Granularity granularity) throws DatabaseException {
+        return query(conn, PAYOUTS.get(granularity), ps -> {
+            ps.setTimestamp(1, Timestamp.valueOf(from.atStartOfDay()));
+            ps.setTimestamp(2, Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+            ps.setObject(3, freelancerId, Types.BIGINT);
+            ps.setObject(4, freelancerId, Types.BIGINT);
+        }, rs -> new FreelancerPayout(
+                rs.getLong("freelancer_id"),
+                rs.getString("first_name") + " " + rs.getString("last_name"),
+                rs.getDate("period_start").toLocalDate(),
+                rs.getLong("payment_count"),
+                rs.getBigDecimal("amount")
+        ), "Greška pri izradi izvještaja o isplatama");
+    }
+
+    /**
+     * Fakturirani i plaćeni iznos po razdoblju, prema datumu računa.
+     *
+     * @param conn         veza na bazu podataka
+     * @param from         prvi dan (uključivo)
+     * @param to           zadnji dan (uključivo)
+     * @param freelancerId ID freelancera ili null za sve
+     * @param granularity  razdoblje grupiranja
+     * @return retci poredani po razdoblju; razdoblja bez računa se ne vraćaju
+     * @throws DatabaseException ako dođe do greške pri izvršavanju upita
+     */
+    public List<PeriodBalance> findInvoicedVsPaid(Connection conn, LocalDate from, LocalDate to, Long freelancerId,
+                                                  Granularity granularity) throws DatabaseException {
+        return query(conn, INVOICED_VS_PAID.get(granularity), ps -> bindRange(ps, from, to, freelancerId),
+                rs -> new PeriodBalance(
+                        rs.getDate("period_start").toLocalDate(),
+                        rs.getLong("invoice_count"),
+                        rs.getBigDecimal("invoiced"),
+                        rs.getLong("paid_count"),
+                        rs.getBigDecimal("paid"),
+                        rs.getBigDecimal("unpaid")
+                ), "Greška pri izradi izvještaja o fakturiranom i plaćenom iznosu");
+    }
+
+    /**
+     * Usluge s najvećim prihodom na računima izdanima u danom razdoblju.
+     *
+     * @param conn         veza na bazu podataka
+     * @param from         prvi dan (uključivo)
+     * @param to           zadnji dan (uključivo)
+     * @param freelancerId ID freelancera ili null za sve
+     * @param limit        najveći broj usluga
+     * @return retci poredani po prihodu silazno
+     * @throws DatabaseException ako dođe do greške pri izvršavanju upita
+     */
+    public List<ServiceRevenue> findTopServices(Connection conn, LocalDate from, LocalDate to, Long freelancerId,
+                                                int limit) throws DatabaseException {
+        return query(conn, TOP_SERVICES_SQL, ps -> {
+            bindRange(ps, from, to, freelancerId);
+            ps.setInt(5, limit);
+        }, rs -> new ServiceRevenue(
+                rs.getString("service_name"),
+                rs.getLong("invoice_count"),
+                rs.getLong("quantity"),
+                rs.getBigDecimal("revenue")
+        ), "Greška pri izradi izvještaja o uslugama");
+    }
+
+    /**
+     * Prosječan broj dana od izdavanja do plaćanja računa po razdoblju izdavanja. Neplaćeni
+     * računi nisu uključeni.
+     *
+     * @param conn         veza na bazu podataka
+     * @param from         prvi dan (uključivo)
+     * @param to           zadnji dan (uključivo)
+     * @param freelancerId ID freelancera ili null za sve
+     * @param granularity  razdoblje grupiranja
+     * @return retci poredani po razdoblju
+     * @throws DatabaseException ako dođe do greške pri izvršavanju upita
+     */
+    public List<PaymentDelay> findDaysToPay(Connection conn, LocalDate from, LocalDate to, Long freelancerId,
+                                            Granularity granularity) throws DatabaseException {
+        return query(conn, DAYS_TO_PAY.get(granularity), ps -> bindRange(ps, from, to, freelancerId),
+                rs -> new PaymentDelay(
+                        rs.getDate("period_start").toLocalDate(),
+                        rs.getLong("paid_count"),
+                        rs.getDouble("average_days"),
+                        rs.getLong("max_days"),
+                        rs.getLong("late_count")
+                ), "Greška pri izradi izvještaja o vremenu plaćanja");
+    }
+
+    private static void bindRange(PreparedStatement ps, LocalDate from, LocalDate to, Long freelancerId)
+            throws SQLException {
+        ps.setDate(1, Date.valueOf(from));
+        ps.setDate(2, Date.valueOf(to));
+        ps.setObject(3, freelancerId, Types.BIGINT);
+        ps.setObject(4, freelancerId, Types.BIGINT);
+    }
+
+    private static <R> List<R> query(Connection conn, String sql, Binder binder, RowReader<R> reader,
+                                     String errorMessage) throws DatabaseException {
+        try (PreparedStatement ps = DbDao.prepare(conn, sql, QueryType.LIST)) {
+            binder.bind(ps);
+            List<R> rows = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) rows.add(reader.read(rs));
+            }
+            return rows;
+        } catch (SQLException e) {
+            throw new DatabaseException(errorMessage, e);
+        }
+    }
+
+    private static Map<Granularity, String> byGranularity(String template) {
+        Map<Granularity, String> sql = new EnumMap<>(Granularity.class);
+        for (Granularity g : Granularity.values()) sql.put(g, template.formatted(g.name()));
+        return sql;
+    }
+
+    @FunctionalInterface
+    private interface Binder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface RowReader<R> {
+        R read(ResultSet rs) throws SQLException;
+    }
+
+    /** Razdoblje grupiranja izvještaja; naziv je ujedno polje za {@code DATE_TRUNC}. */
+    public enum Granularity { MONTH, QUARTER, YEAR }
+
+    /**
+     * Isplate jednom freelanceru u jednom razdoblju.
+     *
+     * @param freelancerId ID freelancera
+     * @param freelancer   ime i prezime freelancera
+     * @param periodStart  prvi dan razdoblja
+     * @param paymentCount broj uplata
+     * @param amount       ukupni isplaćeni iznos
+     */
+    public record FreelancerPayout(long freelancerId, String freelancer, LocalDate periodStart,
+                                   long paymentCount, BigDecimal amount) {
+    }
+
+    /**
+     * Fakturirano i plaćeno u jednom razdoblju izdavanja računa.
+     *
+     * @param periodStart  prvi dan razdoblja
+     * @param invoiceCount broj izdanih računa
+     * @param invoiced     ukupni iznos izdanih računa
+     * @param paidCount    broj plaćenih računa
+     * @param paid         ukupni iznos uplata za te račune
+     * @param unpaid       ukupni iznos neplaćenih računa
+     */
+    public record PeriodBalance(LocalDate periodStart, long invoiceCount, BigDecimal invoiced,
+                                long paidCount, BigDecimal paid, BigDecimal unpaid) {
+    }
+
+    /**
+     * Prihod jedne usluge (po nazivu stavke).
+     *
+     * @param serviceName  naziv usluge
+     * @param invoiceCount broj računa na kojima se usluga pojavljuje
+     * @param quantity     ukupna količina
+     * @param revenue      ukupni prihod
+     */
+    public record ServiceRevenue(String serviceName, long invoiceCount, long quantity, BigDecimal revenue) {
+    }
+
+    /**
+     * Vrijeme plaćanja računa izdanih u jednom razdoblju.
+     *
+     * @param periodStart prvi dan razdoblja
+     * @param paidCount   broj plaćenih računa
+     * @param averageDays prosječan broj dana od izdavanja do uplate
+     * @param maxDays     najveći broj dana od izdavanja do uplate
+     * @param lateCount   broj računa plaćenih nakon roka
+     */
+    public record PaymentDelay(LocalDate periodStart, long paidCount, double averageDays, long maxDays,
+                               long lateCount) {
+    }
+}
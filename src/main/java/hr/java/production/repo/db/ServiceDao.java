@@ -8,7 +8,6 @@ import hr.java.production.util.DbUtils;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Klasa ServiceDao upravlja operacijama pristupa podatcima u bazi koje su
@@ -28,7 +27,32 @@ public final class ServiceDao extends DbDao<Service> {
                 WHERE invoice_id = ?
                 ORDER BY id
                 """;
+    private static final String SELECT_BY_INVOICE_IDS_SQL =
+                """
+                SELECT
+                  id,
+                  invoice_id,
+                  service_name,
+                  unit_fee,
+                  quantity
+                FROM service
+                WHERE invoice_id = ANY(?)
+                ORDER BY invoice_id, id
+                """;
+    private static final String SELECT_ALL_BY_INVOICE_SQL =
+                """
+                SELECT
+                  id,
+                  invoice_id,
+                  service_name,
+                  unit_fee,
+                  quantity
+                FROM service
+                ORDER BY invoice_id, id
+                """;
     private static final String DELETE_BY_INVOICE_ID_SQL = "DELETE FROM service WHERE invoice_id = ?";
+    private static final String DELETE_BY_INVOICE_ID_AND_IDS_SQL =
+                "DELETE FROM service WHERE invoice_id = ? AND id = ANY(?)";
 
     public ServiceDao() {
         super(Service.class);
@@ -93,23 +117,10 @@ public final class ServiceDao extends DbDao<Service> {
     public Map<Long, List<Service>> findByInvoiceIds(Connection conn, Set<Long> invoiceIds) throws SQLException {
         if (invoiceIds == null || invoiceIds.isEmpty()) return Collections.emptyMap();
 
-        String placeholders = invoiceIds.stream().map(x -> "?").collect(Collectors.joining(","));
-        String sql = "SELECT id, invoice_id, service_name, unit_fee, quantity " +
-                "FROM service WHERE invoice_id IN (" + placeholders + ") " +
-                "ORDER BY invoice_id, id";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            int i = 1;
-            for (Long id : invoiceIds) ps.setLong(i++, id);
-            try (ResultSet rs = ps.executeQuery()) {
-                Map<Long, List<Service>> map = new HashMap<>();
-                while (rs.next()) {
-                    Service s = mapRow(rs);
-                    map.computeIfAbsent(s.getInvoiceId(), k -> new ArrayList<>()).add(s);
-                }
-                return map;
-            }
-        }
+        Map<Long, List<Service>> map = HashMap.newHashMap(invoiceIds.size());
+        forEachByIds(conn, SELECT_BY_INVOICE_IDS_SQL, invoiceIds,
+                s -> map.computeIfAbsent(s.getInvoiceId(), k -> new ArrayList<>()).add(s));
+        return map;
     }
 
     public Map<Long, List<Service>> findByInvoiceIds(Set<Long> invoiceIds) throws DatabaseException {
@@ -132,7 +143,7 @@ public final class ServiceDao extends DbDao<Service> {
      */
     public List<Service> findByInvoiceId(Connection conn, long invoiceId) throws DatabaseException {
         List<Service> list = new ArrayList<>();
-        try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_INVOICE_ID_SQL)) {
+        try (PreparedStatement ps = prepare(conn, SELECT_BY_INVOICE_ID_SQL, QueryType.LOOKUP)) {
             ps.setLong(1, invoiceId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) list.add(mapRow(rs));
@@ -143,6 +154,55 @@ public final class ServiceDao extends DbDao<Service> {
         }
     }
 
+    /**
+     * Prolazi kroz sve stavke usluga poredane po ID-u fakture pa po ID-u stavke,
+     * predajući ih potrošaču jednu po jednu.
+     *
+     * @param conn     konekcija na bazu podataka
+     * @param consumer potrošač koji prima svaku stavku
+     * @throws DatabaseException u slučaju greške prilikom pristupa bazi podataka
+     */
+    public void forEachOrderedByInvoice(Connection conn, RowConsumer<Service> consumer) throws DatabaseException {
+        try (PreparedStatement ps = prepare(conn, SELECT_ALL_BY_INVOICE_SQL, QueryType.BULK);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) consumer.accept(mapRow(rs));
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri dohvaćanju svih service stavki", e);
+        }
+    }
+
+    /**
+     * Briše zadane stavke jedne fakture jednom naredbom ({@code id = ANY(?)}). Stavke s
+     * danim ID-em koje pripadaju drugoj fakturi se ne brišu.
+     *
+     * @param conn      konekcija na bazu podataka
+     * @param invoiceId ID fakture kojoj stavke pripadaju
+     * @param ids       ID-evi stavki koje treba obrisati
+     * @return broj obrisanih stavki
+     * @throws DatabaseException u slučaju greške prilikom pristupa bazi podataka
+     */
+    public int deleteByInvoiceIdAndIds(Connection conn, long invoiceId, Collection<Long> ids) throws DatabaseException {
+        if (ids == null || ids.isEmpty()) return 0;
+        List<Long> all = new ArrayList<>(ids);
+        int deleted = 0;
+        try (PreparedStatement ps = prepare(conn, DELETE_BY_INVOICE_ID_AND_IDS_SQL, QueryType.LOOKUP)) {
+            for (int from = 0; from < all.size(); from += MAX_IDS_PER_QUERY) {
+                List<Long> chunk = all.subList(from, Math.min(from + MAX_IDS_PER_QUERY, all.size()));
+                Array array = conn.createArrayOf("BIGINT", chunk.toArray());
+                try {
+                    ps.setLong(1, invoiceId);
+                    ps.setArray(2, array);
+                    deleted += ps.executeUpdate();
+                } finally {
+                    array.free();
+                }
+            }
+            return deleted;
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri brisanju service stavki za račun ID=" + invoiceId, e);
+        }
+    }
+
     /**
      * Briše sve stavke usluga povezane s određenom fakturom na temelju ID-a fakture.
      *
@@ -165,7 +225,7 @@ public final class ServiceDao extends DbDao<Service> {
      * @throws DatabaseException u slučaju greške prilikom pristupa bazi podataka
      */
     public void deleteByInvoiceId(Connection conn, long invoiceId) throws DatabaseException {
-        try (PreparedStatement ps = conn.prepareStatement(DELETE_BY_INVOICE_ID_SQL)) {
+        try (PreparedStatement ps = prepare(conn, DELETE_BY_INVOICE_ID_SQL, QueryType.LOOKUP)) {
             ps.setLong(1, invoiceId);
             ps.executeUpdate();
         } catch (SQLException e) {
@@ -230,4 +290,33 @@ public final class ServiceDao extends DbDao<Service> {
                 """;
     }
 
+    @Override
+    protected String getSelectPageSql() {
+        return """
+                SELECT
+                  id,
+                  invoice_id,
+                  service_name,
+                  unit_fee,
+                  quantity
+                FROM service
+                WHERE id > ?
+                ORDER BY id
+                FETCH FIRST ? ROWS ONLY
+                """;
+    }
+
+    @Override
+    protected String getSelectByIdsSql() {
+        return """
+                SELECT
+                  id,
+                  invoice_id,
+                  service_name,
+                  unit_fee,
+                  quantity
+                FROM service
+                WHERE id = ANY(?)
+                """;
+    }
 }
@@ -0,0 +1,58 @@
+package hr.java.production.repo.db.migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Mijenja strane ključeve {@code service.invoice_id} i {@code payment.invoice_id} u
+ * {@code ON DELETE CASCADE}, pa brisanje računa jednom naredbom briše i njegove stavke i
+ * uplatu. Ograničenja iz {@code schema.sql} nemaju zadani naziv, pa se naziv čita iz
+ * INFORMATION_SCHEMA. Ograničenje koje je već kaskadno se ne dira.
+ */
+final class CascadeInvoiceForeignKeys implements Migration.Step {
+    private static final String FIND_FOREIGN_KEYS_SQL =
+            """
+            SELECT tc.constraint_name, rc.delete_rule
+            FROM information_schema.table_constraints tc
+            JOIN information_schema.referential_constraints rc
+              ON rc.constraint_schema = tc.constraint_schema AND rc.constraint_name = tc.constraint_name
+            JOIN information_schema.key_column_usage kcu
+              ON kcu.constraint_schema = tc.constraint_schema AND kcu.constraint_name = tc.constraint_name
+            WHERE tc.constraint_type = 'FOREIGN KEY'
+              AND tc.table_schema = CURRENT_SCHEMA
+              AND tc.table_name = ?
+              AND kcu.column_name = 'INVOICE_ID'
+            """;
+
+    @Override
+    public void apply(Connection conn) throws SQLException {
+        cascade(conn, "service", "fk_service_invoice");
+        cascade(conn, "payment", "fk_payment_invoice");
+    }
+
+    private static void cascade(Connection conn, String table, String constraintName) throws SQLException {
+        List<String> existing = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(FIND_FOREIGN_KEYS_SQL)) {
+            ps.setString(1, table.toUpperCase(Locale.ROOT));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if ("CASCADE".equals(rs.getString("delete_rule"))) return;
+                    existing.add(rs.getString("constraint_name"));
+                }
+            }
+        }
+        try (Statement st = conn.createStatement()) {
+            for (String name : existing) {
+                st.execute("ALTER TABLE " + table + " DROP CONSTRAINT \"" + name.replace("\"", "\"\"") + "\"");
+            }
+            st.execute("ALTER TABLE " + table + " ADD CONSTRAINT " + constraintName
+                    + " FOREIGN KEY (invoice_id) REFERENCES invoice(id) ON DELETE CASCADE");
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package hr.java.production.repo.db.migration;
+
+import hr.java.production.util.SqlScript;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+
+/**
+ * Jedna verzionirana izmjena sheme baze. Korak je SQL skripta iz resursa ili Java kod;
+ * u oba slučaja mora biti idempotentan (npr. {@code CREATE INDEX IF NOT EXISTS}) jer se
+ * DDL naredbe u H2 potvrđuju odmah pa prekinuta migracija može biti djelomično primijenjena.
+ *
+ * @param version     redni broj verzije, jedinstven i rastući
+ * @param description kratak opis izmjene
+ * @param step        korak koji primjenjuje izmjenu
+ */
+public record Migration(int version, String description, Step step) {
+
+    public Migration {
+        if (version < 1) throw new IllegalArgumentException("Verzija migracije mora biti pozitivna");
+        Objects.requireNonNull(description);
+        Objects.requireNonNull(step);
+    }
+
+    /**
+     * Migracija definirana SQL skriptom iz resursa.
+     *
+     * @param version     verzija
+     * @param description opis
+     * @param resource    apsolutna putanja skripte, npr. "/db/migration/V1__indexes.sql"
+     * @return migracija
+     */
+    public static Migration sql(int version, String description, String resource) {
+        return new Migration(version, description, conn -> SqlScript.load(resource).execute(conn));
+    }
+
+    /**
+     * Migracija definirana Java kodom (npr. kad naziv ograničenja treba pročitati iz baze).
+     *
+     * @param version     verzija
+     * @param description opis
+     * @param step        korak migracije
+     * @return migracija
+     */
+    public static Migration java(int version, String description, Step step) {
+        return new Migration(version, description, step);
+    }
+
+    /** Korak migracije koji se izvršava na danoj vezi. */
+    @FunctionalInterface
+    public interface Step {
+        void apply(Connection conn) throws SQLException, IOException;
+    }
+}
@@ -0,0 +1,152 @@
+package hr.java.production.repo.db.migration;
+
+import hr.java.production.exception.DatabaseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Primjenjuje verzionirane migracije sheme pri pokretanju aplikacije. Primijenjene verzije
+ * bilježe se u tablici {@code schema_version}, pa se svaka migracija izvršava samo jednom.
+ */
+public final class MigrationRunner {
+    private static final Logger log = LoggerFactory.getLogger(MigrationRunner.class);
+
+    private static final String CREATE_VERSION_TABLE_SQL =
+            """
+            CREATE TABLE IF NOT EXISTS schema_version (
+              version      INT PRIMARY KEY,
+              description  VARCHAR(255) NOT NULL,
+              applied_on   TIMESTAMP NOT NULL,
+              execution_ms BIGINT NOT NULL
+            )
+            """;
+    private static final String SELECT_VERSIONS_SQL = "SELECT version FROM schema_version";
+    private static final String INSERT_VERSION_SQL =
+            "INSERT INTO schema_version(version, description, applied_on, execution_ms) VALUES (?, ?, ?, ?)";
+
+    /** Sve migracije aplikacije, redom po verziji. */
+    private static final List<Migration> MIGRATIONS = List.of(
+            Migration.sql(1, "Indeksi za pristup po računu, freelanceru i roku plaćanja",
+                    "/db/migration/V1__hot_path_indexes.sql"),
+            Migration.sql(2, "Tablice vanjskih ključeva i checkpointa skupnog uvoza",
+                    "/db/migration/V2__bulk_import.sql"),
+            Migration.java(3, "Kaskadno brisanje stavki i uplate s računom",
+                    new CascadeInvoiceForeignKeys()),
+            Migration.sql(4, "Jedinstveni ID transakcije uplate",
+                    "/db/migration/V4__payment_transaction_key.sql"),
+            Migration.sql(5, "Spremljeni zbroj i broj stavki računa",
+                    "/db/migration/V5__invoice_totals.sql"),
+            Migration.sql(6, "Indeksi za izvještaje po datumu računa i uplate",
+                    "/db/migration/V6__report_indexes.sql")
+    );
+
+    private final List<Migration> migrations;
+
+    /**
+     * Stvara runner za dani popis migracija.
+     *
+     * @param migrations migracije s jedinstvenim verzijama
+     * @throws IllegalArgumentException ako se neka verzija ponavlja
+     */
+    public MigrationRunner(List<Migration> migrations) {
+        List<Migration> sorted = new ArrayList<>(migrations);
+        sorted.sort(Comparator.comparingInt(Migration::version));
+        for (int i = 1; i < sorted.size(); i++) {
+            if (sorted.get(i).version() == sorted.get(i - 1).version()) {
+                throw new IllegalArgumentException("Dvostruka verzija migracije: " + sorted.get(i).version());
+            }
+        }
+        this.migrations = List.copyOf(sorted);
+    }
+
+    /**
+     * Vraća runner sa svim migracijama aplikacije.
+     *
+     * @return runner s migracijama aplikacije
+     */
+    public static MigrationRunner defaults() {
+        return new MigrationRunner(MIGRATIONS);
+    }
+
+    /**
+     * Primjenjuje sve migracije koje još nisu zabilježene u {@code schema_version}.
+     * Svaka migracija izvršava se u zasebnoj transakciji zajedno sa zapisom o verziji.
+     *
+     * @param conn veza na bazu podataka
+     * @return broj primijenjenih migracija
+     * @throws DatabaseException ako neka migracija ne uspije; prethodne ostaju primijenjene
+     */
+    public int migrate(Connection conn) throws DatabaseException {
+        boolean prevAuto = true;
+        try {
+            prevAuto = conn.getAutoCommit();
+            try (Statement st = conn.createStatement()) {
+                st.execute(CREATE_VERSION_TABLE_SQL);
+            }
+            Set<Integer> applied = findAppliedVersions(conn);
+
+            int count = 0;
+            conn.setAutoCommit(false);
+            for (Migration m : migrations) {
+                if (applied.contains(m.version())) continue;
+                apply(conn, m);
+                count++;
+            }
+            return count;
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri provjeri verzije sheme", e);
+        } finally {
+            try {
+                conn.setAutoCommit(prevAuto);
+            } catch (SQLException e) {
+                log.debug("Failed to restore autoCommit (ignored)", e);
+            }
+        }
+    }
+
+    private void apply(Connection conn, Migration m) throws DatabaseException {
+        log.info("Applying schema migration V{}: {}", m.version(), m.description());
+        long start = System.nanoTime();
+        try {
+            m.step().apply(conn);
+            try (PreparedStatement ps = conn.prepareStatement(INSERT_VERSION_SQL)) {
+                ps.setInt(1, m.version());
+                ps.setString(2, m.description());
+                ps.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+                ps.setLong(4, (System.nanoTime() - start) / 1_000_000);
+                ps.executeUpdate();
+            }
+            conn.commit();
+        } catch (SQLException | IOException e) {
+            try {
+                conn.rollback();
+            } catch (SQLException re) {
+                e.addSuppressed(re);
+            }
+            throw new DatabaseException("Greška pri primjeni migracije V" + m.version() + " (" + m.description() + ")", e);
+        }
+    }
+
+    private Set<Integer> findAppliedVersions(Connection conn) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_VERSIONS_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) versions.add(rs.getInt(1));
+        }
+        return versions;
+    }
+}
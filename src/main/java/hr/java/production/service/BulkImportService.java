@@ -0,0 +1,807 @@
+package hr.java.production.service;
+
+import hr.java.production.exception.DatabaseConnectionException;
+import hr.java.production.exception.DatabaseException;
+import hr.java.production.exception.ObjectValidationException;
+import hr.java.production.model.Address;
+import hr.java.production.model.Entity;
+import hr.java.production.model.Freelancer;
+import hr.java.production.model.Invoice;
+import hr.java.production.model.Payment;
+import hr.java.production.model.Service;
+import hr.java.production.repo.db.AddressDao;
+import hr.java.production.repo.db.FreelancerDao;
+import hr.java.production.repo.db.ImportDao;
+import hr.java.production.repo.db.ImportDao.Checkpoint;
+import hr.java.production.repo.db.InvoiceDao;
+import hr.java.production.repo.db.PaymentDao;
+import hr.java.production.repo.db.ServiceDao;
+import hr.java.production.util.CsvReader;
+import hr.java.production.util.CsvWriter;
+import hr.java.production.util.DbUtils;
+import hr.java.production.util.ValidationUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Skupni uvoz freelancera, računa, stavki i uplata iz CSV datoteka (npr. pri preuzimanju
+ * novog klijenta). Datoteka se čita kao tok i obrađuje u dijelovima od {@code import.chunkSize}
+ * zapisa; svaki dio se validira (builderi modela i {@link ValidationUtils}) i upisuje batch
+ * insertima u vlastitoj transakciji, pa potrošnja memorije ne ovisi o veličini datoteke.
+ * <p>
+ * Uz svaki dio u istoj transakciji sprema se checkpoint (broj obrađenih zapisa), pa prekinuti
+ * uvoz iste datoteke nastavlja od prvog neobrađenog zapisa, a ponovljeni uvoz završene datoteke
+ * ništa ne mijenja. Zapisi koji ne prođu validaciju ili ograničenja baze ne prekidaju uvoz
+ * nego se, s brojem retka i razlogom, zapisuju u datoteku {@code <datoteka>.rejects.csv}, i to
+ * prije checkpointa dijela, pa greška pri zapisu poništava cijeli dio. Uplata s već uvezenim
+ * ID-em transakcije spaja se s postojećom i broji kao spojena, ne kao upisana.
+ * <p>
+ * Freelanceri i računi imaju stupac {@code key} (vanjski ključ iz izvornog sustava) koji se
+ * bilježi u tablici {@code import_key}; računi se na freelancera, a stavke i uplate na račun
+ * pozivaju tim ključem ({@code freelancer_key}, {@code invoice_key}). Očekivani stupci:
+ * <ul>
+ *   <li>FREELANCER: key, first_name, last_name, email, phone_number, street, house_number, city,
+ *       postal_code, business_name, business_id_no, bank_account, active (neobavezno)</li>
+ *   <li>INVOICE: key, freelancer_key, invoice_date, due_date</li>
+ *   <li>SERVICE: invoice_key, service_name, unit_fee, quantity</li>
+ *   <li>PAYMENT: invoice_key, amount, paid_on, transaction_id</li>
+ * </ul>
+ * Datumi se prihvaćaju u obliku {@code 2024-03-31} ili {@code 31.03.2024.}. Uvezeni zapisi
+ * ne bilježe se u ChangeLogger zapis po zapis.
+ */
+public final class BulkImportService extends TransactionService {
+
+    /** Vrsta zapisa u CSV datoteci. */
+    public enum Kind { FREELANCER, INVOICE, SERVICE, PAYMENT }
+
+    private static final int DEFAULT_CHUNK_SIZE = 5_000;
+    private static final String KEY = "key";
+    private static final DateTimeFormatter LOCAL_DATE = DateTimeFormatter.ofPattern("d.M.yyyy[.]");
+
+    private final ImportDao importDao;
+    private final AddressDao addressDao;
+    private final FreelancerDao freelancerDao;
+    private final InvoiceDao invoiceDao;
+    private final ServiceDao serviceDao;
+    private final PaymentDao paymentDao;
+    private final OverdueTracker overdueTracker;
+    private int chunkSize;
+
+    public BulkImportService(ImportDao importDao,
+                             AddressDao addressDao,
+                             FreelancerDao freelancerDao,
+                             InvoiceDao invoiceDao,
+                             ServiceDao serviceDao,
+                             PaymentDao paymentDao) {
+        this.importDao     = Objects.requireNonNull(importDao);
+        this.addressDao    = Objects.requireNonNull(addressDao);
+        this.freelancerDao = Objects.requireNonNull(freelancerDao);
+        this.invoiceDao    = Objects.requireNonNull(invoiceDao);
+        this.serviceDao    = Objects.requireNonNull(serviceDao);
+        this.paymentDao    = Objects.requireNonNull(paymentDao);
+        this.overdueTracker = OverdueTracker.getInstance();
+    }
+
+    public BulkImportService() {
+        this(new ImportDao(), new AddressDao(), new FreelancerDao(), new InvoiceDao(), new ServiceDao(), new PaymentDao());
+    }
+
+    /**
+     * Postavlja broj zapisa po transakciji; bez poziva koristi se {@code import.chunkSize}.
+     *
+     * @param chunkSize broj zapisa po transakciji, mora biti veći od 0
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) throw new IllegalArgumentException("Veličina dijela mora biti veća od 0");
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Uvozi CSV datoteku, nastavljajući od checkpointa ako je uvoz iste datoteke prekinut.
+     *
+     * @param kind vrsta zapisa u datoteci
+     * @param file CSV datoteka s retkom zaglavlja
+     * @return sažetak uvoza
+     * @throws DatabaseException ako upis u bazu ne uspije; dijelovi upisani do tada ostaju upisani
+     * @throws IOException       ako se datoteka ne može čitati ili joj nedostaje stupac
+     */
+    public Result importFile(Kind kind, Path file) throws DatabaseException, IOException {
+        return importFile(kind, file, r -> { });
+    }
+
+    /**
+     * Uvozi CSV datoteku i nakon svakog upisanog dijela javlja napredak.
+     *
+     * @param kind     vrsta zapisa u datoteci
+     * @param file     CSV datoteka s retkom zaglavlja
+     * @param progress prima sažetak do tada obrađenih zapisa nakon svakog dijela
+     * @return sažetak uvoza
+     * @throws DatabaseException ako upis u bazu ne uspije; dijelovi upisani do tada ostaju upisani
+     * @throws IOException       ako se datoteka ne može čitati ili joj nedostaje stupac
+     */
+    public Result importFile(Kind kind, Path file, Consumer<Result> progress) throws DatabaseException, IOException {
+        Path normalized = file.toAbsolutePath().normalize();
+        String source = kind + ":" + normalized;
+        Checkpoint start = inReadOnly(conn -> importDao.findCheckpoint(conn, source).orElse(new Checkpoint(0, 0)),
+                "Greška pri dohvaćanju checkpointa uvoza");
+        int size = chunkSize > 0 ? chunkSize : configuredChunkSize();
+
+        try (CsvReader reader = CsvReader.open(normalized)) {
+            String[] header = reader.next();
+            if (header == null) throw new IOException("Datoteka je prazna: " + normalized);
+            Columns columns = new Columns(header);
+            RowMapper<?> mapper = mapperFor(kind);
+            columns.require(mapper.requiredColumns());
+
+            if (reader.skip(start.recordsDone()) > 0) {
+                log.info("Resuming {} import of {} after {} records", kind, normalized, start.recordsDone());
+            }
+            try (RejectFile rejects = new RejectFile(rejectsFileOf(normalized), reader.getDelimiter(), header,
+                    start.recordsDone() > 0)) {
+                return run(mapper, reader, columns, source, start, size, rejects, progress);
+            }
+        }
+    }
+
+    /**
+     * Vraća putanju datoteke odbijenih zapisa za danu ulaznu datoteku.
+     *
+     * @param file ulazna CSV datoteka
+     * @return putanja {@code <datoteka>.rejects.csv}
+     */
+    public static Path rejectsFileOf(Path file) {
+        return file.resolveSibling(file.getFileName() + ".rejects.csv");
+    }
+
+    private <E extends Entity> Result run(RowMapper<E> mapper, CsvReader reader, Columns columns, String source,
+                                          Checkpoint start, int size, RejectFile rejects,
+                                          Consumer<Result> progress) throws DatabaseException, IOException {
+        long startNanos = System.nanoTime();
+        Result total = new Result(mapper.kind(), source, start.recordsDone(), 0, 0, 0, 0, 0, rejects.file,
+                Duration.ZERO);
+        Checkpoint checkpoint = start;
+        List<Row> chunk = new ArrayList<>(size);
+        String[] fields;
+        boolean more = true;
+        while (more) {
+            fields = reader.next();
+            if (fields != null) chunk.add(new Row(reader.getRecordLine(), fields));
+            more = fields != null;
+            if (chunk.size() < size && more) continue;
+            if (chunk.isEmpty()) break;
+
+            ChunkOutcome<E> outcome = importChunk(mapper, columns, chunk, source, checkpoint, rejects);
+            mapper.afterCommit(outcome.saved());
+            checkpoint = outcome.checkpoint();
+            total = total.plus(chunk.size(), outcome.saved().size() - outcome.merged(), outcome.merged(),
+                    outcome.skipped(), outcome.rejects().size(), Duration.ofNanos(System.nanoTime() - startNanos));
+            progress.accept(total);
+            log.debug("Imported {} chunk: {}", mapper.kind(), total);
+            chunk.clear();
+        }
+        log.info("Bulk import finished: {}", total);
+        return total;
+    }
+
+    private <E extends Entity> ChunkOutcome<E> importChunk(RowMapper<E> mapper, Columns columns, List<Row> rows,
+                                                           String source, Checkpoint before,
+                                                           RejectFile rejectFile) throws DatabaseException {
+        try {
+            return inTransaction(conn -> writeChunk(conn, mapper, columns, rows, source, before, rejectFile, false),
+                    "Greška pri skupnom uvozu");
+        } catch (DatabaseException e) {
+            if (!isConstraintViolation(e)) throw e;
+            // barem jedan zapis krši ograničenje baze (npr. jedinstveni email); batch ne kaže koji
+            log.debug("Batch insert violated a constraint, importing chunk row by row", e);
+            return inTransaction(conn -> writeChunk(conn, mapper, columns, rows, source, before, rejectFile, true),
+                    "Greška pri skupnom uvozu");
+        }
+    }
+
+    private <E extends Entity> ChunkOutcome<E> writeChunk(Connection conn, RowMapper<E> mapper, Columns columns,
+                                                          List<Row> rows, String source, Checkpoint before,
+                                                          RejectFile rejectFile, boolean rowByRow)
+            throws SQLException, DatabaseException {
+        Kind kind = mapper.kind();
+        Set<String> ownKeys = new LinkedHashSet<>();
+        Set<String> refKeys = new LinkedHashSet<>();
+        for (Row row : rows) {
+            if (mapper.hasOwnKey()) addIfPresent(ownKeys, columns.get(row.fields(), KEY));
+            if (mapper.refKind() != null) addIfPresent(refKeys, columns.get(row.fields(), mapper.refColumn()));
+        }
+        Set<String> existing = importDao.findKeys(conn, kind.name(), ownKeys).keySet();
+        Map<String, Long> refs = mapper.refKind() == null
+                ? Map.of()
+                : importDao.findKeys(conn, mapper.refKind().name(), refKeys);
+
+        List<Reject> rejects = new ArrayList<>();
+        List<Pending<E>> pending = new ArrayList<>(rows.size());
+        Set<String> seen = new HashSet<>();
+        int skipped = 0;
+        for (Row row : rows) {
+            try {
+                String key = null;
+                if (mapper.hasOwnKey()) {
+                    key = columns.required(row.fields(), KEY);
+                    if (existing.contains(key)) {
+                        skipped++; // već uvezen (npr. ponovljeni uvoz iste datoteke)
+                        continue;
+                    }
+                    if (!seen.add(key)) throw new ObjectValidationException("Ključ se ponavlja u datoteci: " + key);
+                }
+                Long refId = null;
+                if (mapper.refKind() != null) {
+                    String refKey = columns.required(row.fields(), mapper.refColumn());
+                    refId = refs.get(refKey);
+                    if (refId == null) {
+                        throw new ObjectValidationException("Nepoznata vrijednost " + mapper.refColumn() + ": " + refKey);
+                    }
+                }
+                pending.add(new Pending<>(row, key, mapper.map(columns, row.fields(), refId)));
+            } catch (RuntimeException e) {
+                rejects.add(new Reject(row, reasonOf(e)));
+            }
+        }
+
+        List<Pending<E>> saved;
+        int merged;
+        if (!rowByRow) {
+            List<E> entities = pending.stream().map(Pending::entity).toList();
+            merged = mapper.countMerged(conn, entities);
+            mapper.saveAll(conn, entities);
+            saved = pending;
+        } else {
+            saved = new ArrayList<>(pending.size());
+            merged = 0;
+            for (Pending<E> p : pending) {
+                Savepoint sp = conn.setSavepoint();
+                try {
+                    int wouldMerge = mapper.countMerged(conn, List.of(p.entity()));
+                    mapper.save(conn, p.entity());
+                    conn.releaseSavepoint(sp);
+                    saved.add(p);
+                    merged += wouldMerge;
+                } catch (DatabaseException e) {
+                    // odbija se samo zapis koji krši ograničenje; prolazne greške (istek
+                    // zaključavanja, deadlock, prekinuta veza) ponavljaju ili prekidaju cijeli dio
+                    if (!isConstraintViolation(e)) throw e;
+                    conn.rollback(sp);
+                    rejects.add(new Reject(p.row(), reasonOf(e)));
+                }
+            }
+            rejects.sort(Comparator.comparingLong(r -> r.row().line()));
+        }
+
+        mapper.afterWrite(conn, saved.stream().map(Pending::entity).toList());
+        if (mapper.hasOwnKey()) {
+            Map<String, Long> keys = new HashMap<>(saved.size() * 2);
+            for (Pending<E> p : saved) keys.put(p.key(), p.entity().getId());
+            importDao.saveKeys(conn, kind.name(), keys);
+        }
+        // odbijeni zapisi zapisuju se prije checkpointa: ako zapis ne uspije, dio se poništava
+        // i ponavlja, a ako dio ne bude potvrđen, ponovljeni dio ih ne zapisuje dvaput
+        try {
+            rejectFile.write(rejects);
+        } catch (IOException e) {
+            throw new DatabaseException("Greška pri zapisu datoteke odbijenih zapisa " + rejectFile.file, e);
+        }
+        Checkpoint after = new Checkpoint(before.recordsDone() + rows.size(), before.rejected() + rejects.size());
+        importDao.saveCheckpoint(conn, source, kind.name(), after);
+        return new ChunkOutcome<>(saved.stream().map(Pending::entity).toList(), merged, skipped, rejects, after);
+    }
+
+    private RowMapper<?> mapperFor(Kind kind) {
+        return switch (kind) {
+            case FREELANCER -> new FreelancerMapper();
+            case INVOICE -> new InvoiceMapper();
+            case SERVICE -> new ServiceMapper();
+            case PAYMENT -> new PaymentMapper();
+        };
+    }
+
+    private int configuredChunkSize() throws DatabaseException {
+        try {
+            int size = Integer.parseInt(DbUtils.getProperty("import.chunkSize", String.valueOf(DEFAULT_CHUNK_SIZE)));
+            if (size < 1) throw new NumberFormatException("import.chunkSize < 1");
+            return size;
+        } catch (DatabaseConnectionException | NumberFormatException e) {
+            throw new DatabaseException("Neispravan parametar import.chunkSize", e);
+        }
+    }
+
+    private static void addIfPresent(Set<String> keys, String key) {
+        if (key != null) keys.add(key);
+    }
+
+    private static boolean isConstraintViolation(Throwable t) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (c instanceof SQLException sql && sql.getSQLState() != null && sql.getSQLState().startsWith("23")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Poruka najdublje iznimke, bez SQL teksta koji H2 dodaje u novim retcima. */
+    private static String reasonOf(Throwable t) {
+        Throwable root = t;
+        while (root.getCause() != null) root = root.getCause();
+        String message = root.getMessage() != null ? root.getMessage() : root.getClass().getSimpleName();
+        int nl = message.indexOf('\n');
+        return nl < 0 ? message : message.substring(0, nl);
+    }
+
+    /* ------------------------------ parsiranje ------------------------------ */
+
+    private static LocalDate parseDate(String value, String column) {
+        try {
+            return value.indexOf('-') > 0 ? LocalDate.parse(value) : LocalDate.parse(value, LOCAL_DATE);
+        } catch (DateTimeParseException e) {
+            throw new ObjectValidationException("Neispravan datum u stupcu " + column + ": " + value);
+        }
+    }
+
+    private static LocalDateTime parseDateTime(String value, String column) {
+        if (value.indexOf(':') < 0) return parseDate(value, column).atStartOfDay();
+        try {
+            return LocalDateTime.parse(value.replace(' ', 'T'));
+        } catch (DateTimeParseException e) {
+            throw new ObjectValidationException("Neispravan datum i vrijeme u stupcu " + column + ": " + value);
+        }
+    }
+
+    private static BigDecimal parseDecimal(String value, String column) {
+        try {
+            return new BigDecimal(value.replace(',', '.'));
+        } catch (NumberFormatException e) {
+            throw new ObjectValidationException("Neispravan iznos u stupcu " + column + ": " + value);
+        }
+    }
+
+    private static int parseInt(String value, String column) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ObjectValidationException("Neispravan cijeli broj u stupcu " + column + ": " + value);
+        }
+    }
+
+    private static boolean parseBoolean(String value, String column) {
+        if (value == null) return true;
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "true", "da", "1", "yes" -> true;
+            case "false", "ne", "0", "no" -> false;
+            default -> throw new ObjectValidationException("Neispravna logička vrijednost u stupcu " + column + ": " + value);
+        };
+    }
+
+    /* ------------------------------- vrste zapisa ------------------------------- */
+
+    /** Pretvara CSV zapis jedne vrste u entitet i upisuje entitete u bazu. */
+    private interface RowMapper<E extends Entity> {
+        Kind kind();
+
+        String[] requiredColumns();
+
+        /** Ima li vrsta vlastiti vanjski ključ (stupac {@code key}). */
+        default boolean hasOwnKey() {
+            return false;
+        }
+
+        /** Vrsta na koju zapis upućuje ili null. */
+        default Kind refKind() {
+            return null;
+        }
+
+        default String refColumn() {
+            return null;
+        }
+
+        E map(Columns columns, String[] fields, Long refId);
+
+        void saveAll(Connection conn, List<E> entities) throws DatabaseException;
+
+        void save(Connection conn, E entity) throws DatabaseException;
+
+        /**
+         * Broj entiteta koje će upis spojiti s već postojećim zapisom umjesto da ih umetne;
+         * poziva se u transakciji dijela prije upisa.
+         */
+        default int countMerged(Connection conn, List<E> entities) throws DatabaseException {
+            return 0;
+        }
+
+        /** Poziva se u transakciji dijela nakon upisa, s uspješno upisanim entitetima. */
+        default void afterWrite(Connection conn, List<E> saved) throws DatabaseException {
+        }
+
+        /** Poziva se nakon commita dijela s uspješno upisanim entitetima. */
+        default void afterCommit(List<E> saved) {
+        }
+    }
+
+    private final class FreelancerMapper implements RowMapper<Freelancer> {
+        @Override
+        public Kind kind() {
+            return Kind.FREELANCER;
+        }
+
+        @Override
+        public String[] requiredColumns() {
+            return new String[]{KEY, "first_name", "last_name", "email", "phone_number", "street", "house_number",
+                    "city", "postal_code", "business_name", "business_id_no", "bank_account"};
+        }
+
+        @Override
+        public boolean hasOwnKey() {
+            return true;
+        }
+
+        @Override
+        public Freelancer map(Columns c, String[] f, Long refId) {
+            Address address = new Address.Builder()
+                    .street(c.get(f, "street"))
+                    .houseNumber(c.get(f, "house_number"))
+                    .city(c.get(f, "city"))
+                    .postalCode(c.get(f, "postal_code"))
+                    .build();
+            ValidationUtils.validateString(c.get(f, "bank_account"), "Broj bankovnog računa");
+            return new Freelancer.Builder()
+                    .firstName(c.get(f, "first_name"))
+                    .lastName(c.get(f, "last_name"))
+                    .email(c.get(f, "email"))
+                    .phoneNumber(c.get(f, "phone_number"))
+                    .address(address)
+                    .businessName(c.get(f, "business_name"))
+                    .businessIdentificationNumber(c.get(f, "business_id_no"))
+                    .bankAccountNumber(c.get(f, "bank_account"))
+                    .active(parseBoolean(c.get(f, "active"), "active"))
+                    .build();
+        }
+
+        @Override
+        public void saveAll(Connection conn, List<Freelancer> entities) throws DatabaseException {
+            addressDao.saveAll(conn, entities.stream().map(Freelancer::getAddress).toList());
+            freelancerDao.saveAll(conn, entities);
+        }
+
+        @Override
+        public void save(Connection conn, Freelancer entity) throws DatabaseException {
+            addressDao.save(conn, entity.getAddress());
+            freelancerDao.save(conn, entity);
+        }
+    }
+
+    private final class InvoiceMapper implements RowMapper<Invoice> {
+        @Override
+        public Kind kind() {
+            return Kind.INVOICE;
+        }
+
+        @Override
+        public String[] requiredColumns() {
+            return new String[]{KEY, "freelancer_key", "invoice_date", "due_date"};
+        }
+
+        @Override
+        public boolean hasOwnKey() {
+            return true;
+        }
+
+        @Override
+        public Kind refKind() {
+            return Kind.FREELANCER;
+        }
+
+        @Override
+        public String refColumn() {
+            return "freelancer_key";
+        }
+
+        @Override
+        public Invoice map(Columns c, String[] f, Long freelancerId) {
+            return new Invoice.Builder()
+                    .freelancer(Freelancer.ref(freelancerId))
+                    .invoiceDate(parseDate(c.required(f, "invoice_date"), "invoice_date"))
+                    .dueDate(parseDate(c.required(f, "due_date"), "due_date"))
+                    .build();
+        }
+
+        @Override
+        public void saveAll(Connection conn, List<Invoice> entities) throws DatabaseException {
+            invoiceDao.saveAll(conn, entities);
+        }
+
+        @Override
+        public void save(Connection conn, Invoice entity) throws DatabaseException {
+            invoiceDao.save(conn, entity);
+        }
+
+        @Override
+        public void afterCommit(List<Invoice> saved) {
+            for (Invoice inv : saved) overdueTracker.invoiceSaved(inv.getId(), inv.getDueDate());
+        }
+    }
+
+    private final class ServiceMapper implements RowMapper<Service> {
+        @Override
+        public Kind kind() {
+            return Kind.SERVICE;
+        }
+
+        @Override
+        public String[] requiredColumns() {
+            return new String[]{"invoice_key", "service_name", "unit_fee", "quantity"};
+        }
+
+        @Override
+        public Kind refKind() {
+            return Kind.INVOICE;
+        }
+
+        @Override
+        public String refColumn() {
+            return "invoice_key";
+        }
+
+        @Override
+        public Service map(Columns c, String[] f, Long invoiceId) {
+            return new Service.Builder()
+                    .invoiceId(invoiceId)
+                    .serviceName(c.get(f, "service_name"))
+                    .unitFee(parseDecimal(c.required(f, "unit_fee"), "unit_fee"))
+                    .quantity(parseInt(c.required(f, "quantity"), "quantity"))
+                    .build();
+        }
+
+        @Override
+        public void saveAll(Connection conn, List<Service> entities) throws DatabaseException {
+            serviceDao.saveAll(conn, entities);
+        }
+
+        @Override
+        public void save(Connection conn, Service entity) throws DatabaseException {
+            serviceDao.save(conn, entity);
+        }
+
+        @Override
+        public void afterWrite(Connection conn, List<Service> saved) throws DatabaseException {
+            invoiceDao.refreshTotals(conn, saved.stream().map(Service::getInvoiceId).collect(Collectors.toSet()));
+        }
+    }
+
+    private final class PaymentMapper implements RowMapper<Payment> {
+        @Override
+        public Kind kind() {
+            return Kind.PAYMENT;
+        }
+
+        @Override
+        public String[] requiredColumns() {
+            return new String[]{"invoice_key", "amount", "paid_on", "transaction_id"};
+        }
+
+        @Override
+        public Kind refKind() {
+            return Kind.INVOICE;
+        }
+
+        @Override
+        public String refColumn() {
+            return "invoice_key";
+        }
+
+        @Override
+        public Payment map(Columns c, String[] f, Long invoiceId) {
+            String transactionId = c.get(f, "transaction_id");
+            ValidationUtils.validateString(transactionId, "ID transakcije");
+            return new Payment.Builder()
+                    .invoice(Invoice.ref(invoiceId))
+                    .amount(parseDecimal(c.required(f, "amount"), "amount"))
+                    .paidOn(parseDateTime(c.required(f, "paid_on"), "paid_on"))
+                    .transactionId(transactionId)
+                    .build();
+        }
+
+        // uplata s već uvezenim ID-em transakcije se ažurira umjesto da se odbije
+        @Override
+        public void saveAll(Connection conn, List<Payment> entities) throws DatabaseException {
+            paymentDao.upsertAll(conn, entities);
+        }
+
+        @Override
+        public void save(Connection conn, Payment entity) throws DatabaseException {
+            paymentDao.upsert(conn, entity);
+        }
+
+        // postojeći ID transakcije ili ponovljeni ID unutar istog dijela
+        @Override
+        public int countMerged(Connection conn, List<Payment> entities) throws DatabaseException {
+            Set<String> ids = entities.stream().map(Payment::getTransactionId).collect(Collectors.toSet());
+            Set<String> existing = paymentDao.findExistingTransactionIds(conn, ids);
+            Set<String> seen = new HashSet<>();
+            int merged = 0;
+            for (Payment p : entities) {
+                if (!seen.add(p.getTransactionId()) || existing.contains(p.getTransactionId())) merged++;
+            }
+            return merged;
+        }
+
+        @Override
+        public void afterCommit(List<Payment> saved) {
+            for (Payment p : saved) overdueTracker.paymentSaved(p.getInvoice().getId());
+        }
+    }
+
+    /* --------------------------------- pomoćno --------------------------------- */
+
+    /** Indeksi stupaca prema zaglavlju (bez obzira na velika i mala slova). */
+    private static final class Columns {
+        private final Map<String, Integer> index = new HashMap<>();
+
+        private Columns(String[] header) {
+            for (int i = 0; i < header.length; i++) index.putIfAbsent(header[i].strip().toLowerCase(Locale.ROOT), i);
+        }
+
+        private void require(String[] names) throws IOException {
+            List<String> missing = new ArrayList<>();
+            for (String name : names) if (!index.containsKey(name)) missing.add(name);
+            if (!missing.isEmpty()) throw new IOException("Nedostaju stupci: " + String.join(", ", missing));
+        }
+
+        /** Vrijednost stupca bez vodećih i završnih razmaka, ili null ako je prazna. */
+        private String get(String[] fields, String name) {
+            Integer i = index.get(name);
+            if (i == null || i >= fields.length) return null;
+            String value = fields[i].strip();
+            return value.isEmpty() ? null : value;
+        }
+
+        private String required(String[] fields, String name) {
+            String value = get(fields, name);
+            if (value == null) throw new ObjectValidationException("Nedostaje vrijednost stupca " + name);
+            return value;
+        }
+    }
+
+    /**
+     * Datoteka odbijenih zapisa; otvara se tek pri prvom odbijenom zapisu. Zapisi se dodaju
+     * redom po broju retka, a zapis s brojem retka koji je već u datoteci se preskače, pa dio
+     * koji je nakon zapisa poništen i ponovljen (u istom ili sljedećem pokretanju) ne
+     * udvostručuje retke.
+     */
+    private static final class RejectFile implements AutoCloseable {
+        private final Path file;
+        private final char delimiter;
+        private final String[] header;
+        private final boolean resume;
+        private CsvWriter writer;
+        private long lastLine;
+
+        private RejectFile(Path file, char delimiter, String[] header, boolean resume) {
+            this.file = file;
+            this.delimiter = delimiter;
+            this.header = header;
+            this.resume = resume;
+        }
+
+        private void write(List<Reject> rejects) throws IOException {
+            if (rejects.isEmpty()) return;
+            if (writer == null) open();
+            for (Reject r : rejects) {
+                if (r.row().line() <= lastLine) continue;
+                writer.writeRecord(prefixed(String.valueOf(r.row().line()), r.reason(), r.row().fields()));
+                lastLine = r.row().line();
+            }
+            writer.flush();
+        }
+
+        private void open() throws IOException {
+            boolean append = resume && Files.exists(file);
+            if (append) lastLine = lastWrittenLine();
+            writer = new CsvWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING), delimiter);
+            if (!append) writer.writeRecord(prefixed("line", "reason", header));
+        }
+
+        /** Najveći broj retka u postojećoj datoteci (prvi stupac), 0 ako nema zapisa. */
+        private long lastWrittenLine() throws IOException {
+            long last = 0;
+            try (CsvReader reader = CsvReader.open(file)) {
+                if (reader.next() == null) return 0; // zaglavlje
+                String[] fields;
+                while ((fields = reader.next()) != null) {
+                    try {
+                        last = Math.max(last, Long.parseLong(fields[0].strip()));
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Neispravan broj retka u datoteci odbijenih zapisa " + file, e);
+                    }
+                }
+            }
+            return last;
+        }
+
+        private static String[] prefixed(String first, String second, String[] rest) {
+            String[] out = new String[rest.length + 2];
+            out[0] = first;
+            out[1] = second;
+            System.arraycopy(rest, 0, out, 2, rest.length);
+            return out;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (writer != null) writer.close();
+        }
+    }
+
+    private record Row(long line, String[] fields) {
+    }
+
+    private record Pending<E>(Row row, String key, E entity) {
+    }
+
+    private record Reject(Row row, String reason) {
+    }
+
+    private record ChunkOutcome<E>(List<E> saved, int merged, int skipped, List<Reject> rejects,
+                                   Checkpoint checkpoint) {
+    }
+
+    /**
+     * Sažetak uvoza jedne datoteke.
+     *
+     * @param kind        vrsta zapisa
+     * @param source      naziv izvora (vrsta i putanja datoteke)
+     * @param resumedFrom broj zapisa obrađenih u prethodnim pokretanjima
+     * @param processed   broj zapisa obrađenih u ovom pokretanju
+     * @param imported    broj novih upisanih zapisa
+     * @param merged      broj zapisa spojenih s postojećim zapisom (uplate s već uvezenim ID-em transakcije)
+     * @param skipped     broj zapisa preskočenih jer su već uvezeni
+     * @param rejected    broj odbijenih zapisa
+     * @param rejectsFile datoteka odbijenih zapisa (postoji samo ako je bilo odbijenih)
+     * @param elapsed     trajanje ovog pokretanja
+     */
+    public record Result(Kind kind, String source, long resumedFrom, long processed, long imported, long merged,
+                         long skipped, long rejected, Path rejectsFile, Duration elapsed) {
+
+        private Result plus(long processed, long imported, long merged, long skipped, long rejected,
+                            Duration elapsed) {
+            return new Result(kind, source, resumedFrom, this.processed + processed, this.imported + imported,
+                    this.merged + merged, this.skipped + skipped, this.rejected + rejected, rejectsFile, elapsed);
+        }
+
+        @Override
+        public String toString() {
+            double seconds = Math.max(elapsed.toNanos() / 1e9, 1e-9);
+            return String.format("%s: processed=%d imported=%d merged=%d skipped=%d rejected=%d resumedFrom=%d"
+                            + " %.1f s (%.0f rows/s)",
+                    kind, processed, imported, merged, skipped, rejected, resumedFrom, seconds, processed / seconds);
+        }
+    }
+}
@@ -5,11 +5,12 @@ import hr.java.production.log.BinaryChangeLogger;
 import hr.java.production.log.ChangeLogger;
 import hr.java.production.model.Address;
 import hr.java.production.model.Freelancer;
+import hr.java.production.model.Worker;
 import hr.java.production.repo.db.AddressDao;
 import hr.java.production.repo.db.FreelancerDao;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Servis za upravljanje freelancerima i njihovim povezanim podacima, uključujući
@@ -24,6 +25,7 @@ public final class FreelancerService extends TransactionService {
     private final FreelancerDao freelancerDao;
     private final AddressDao addressDao;
     private final ChangeLogger changeLogger;
+    private final ReferenceGraph<Freelancer, Address> addressGraph;
 
     public FreelancerService(FreelancerDao freelancerDao,
                              AddressDao addressDao,
@@ -31,6 +33,8 @@ public final class FreelancerService extends TransactionService {
         this.freelancerDao = Objects.requireNonNull(freelancerDao);
         this.addressDao    = Objects.requireNonNull(addressDao);
         this.changeLogger  = Objects.requireNonNull(changeLogger);
+        this.addressGraph  = ReferenceGraph.<Freelancer>root()
+                .ref(Worker::getAddress, Worker::setAddress, addressDao::findByIds);
     }
 
     public FreelancerService() {
@@ -38,7 +42,7 @@ public final class FreelancerService extends TransactionService {
     }
 
     public Long save(Freelancer freelancer) throws DatabaseException {
-        return inTransaction(conn -> {
+        Long id = inTransaction(conn -> {
             if (freelancer == null) {
                 throw new DatabaseException("Suradnik ne smije biti null.");
             }
@@ -50,13 +54,15 @@ public final class FreelancerService extends TransactionService {
                 addressDao.save(conn, addr);
             }
             freelancerDao.save(conn, freelancer);
-            changeLogger.logCreate(freelancer);
             return freelancer.getId();
-        }, "Greška pri kreiranju freelancera");
+        }, "Greška pri kreiranju freelancera",
+                entities(freelancer, freelancer == null ? null : Collections.singletonList(freelancer.getAddress())));
+        changeLogger.logCreate(freelancer);
+        return id;
     }
 
     public void update(Freelancer updated) throws DatabaseException {
-        inTransaction(conn -> {
+        Freelancer old = inTransaction(conn -> {
             if (updated == null) {
                 throw new DatabaseException("Suradnik ne smije biti null.");
             }
@@ -65,7 +71,7 @@ public final class FreelancerService extends TransactionService {
                 throw new DatabaseException("ID suradnika ne smije biti null.");
             }
 
-            Freelancer old = freelancerDao.findById(conn, id)
+            Freelancer stored = freelancerDao.findById(conn, id)
                     .orElseThrow(() -> new DatabaseException(NO_FREELANCER_ID + id));
 
             Address addr = updated.getAddress();
@@ -73,58 +79,39 @@ public final class FreelancerService extends TransactionService {
                 throw new DatabaseException("Freelancer.address must not be null.");
             }
 
-            if (addr.getId() == null) {
-                addressDao.save(conn, addr);
-            } else {
-                addressDao.update(conn, addr);
-            }
-
+            addressDao.upsert(conn, addr);
             freelancerDao.update(conn, updated);
-            changeLogger.logUpdate(old, updated);
-            return null;
-        }, "Greška pri ažuriranju freelancera");
+            return stored;
+        }, "Greška pri ažuriranju freelancera",
+                entities(updated == null ? null : updated.getAddress(), null));
+        changeLogger.logUpdate(old, updated);
     }
 
     public void delete(Long freelancerId) throws DatabaseException {
-        inTransaction(conn -> {
-            Freelancer old = freelancerDao.findById(conn, freelancerId)
+        Freelancer old = inTransaction(conn -> {
+            Freelancer stored = freelancerDao.findById(conn, freelancerId)
                     .orElseThrow(() -> new DatabaseException(NO_FREELANCER_ID + freelancerId));
 
             freelancerDao.delete(conn, freelancerId);
-            changeLogger.logDelete(old);
-            return null;
+            return stored;
         }, "Greška pri brisanju freelancera");
+        changeLogger.logDelete(old);
     }
 
     /** Returns ALL freelancers fully hydrated (Freelancer + Address) using batch address fetch. */
     public List<Freelancer> findAll() throws DatabaseException {
-        return inTransaction(conn -> {
+        return inReadOnly(conn -> {
             List<Freelancer> freelancers = freelancerDao.findAll(conn);
             if (freelancers.isEmpty()) return List.of();
 
-            // Skupi sve addressId-ove koje trebamo
-            Set<Long> addressIds = freelancers.stream()
-                    .map(f -> f.getAddress() != null ? f.getAddress().getId() : null)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toSet());
-
-            Map<Long, Address> addresses = addressDao.findByIds(conn, addressIds);
-
-            // Hidracija na mjestu: zamijeni ref(id) potpunim objektom
-            for (Freelancer f : freelancers) {
-                if (f.getAddress() != null && f.getAddress().getId() != null) {
-                    Address full = addresses.get(f.getAddress().getId());
-                    if (full != null) {
-                        f.setAddress(full);
-                    }
-                }
-            }
+            // Hidracija na mjestu: zamijeni ref(id) potpunim objektom (jedan upit za sve adrese)
+            addressGraph.hydrate(conn, freelancers);
             return freelancers;
         }, "Greška pri dohvaćanju freelancera");
     }
 
     public Optional<Freelancer> findById(Long id) throws DatabaseException {
-        return inTransaction(conn -> {
+        return inReadOnly(conn -> {
             Optional<Freelancer> base = freelancerDao.findById(conn, id);
             if (base.isEmpty()) return Optional.empty();
 
@@ -136,4 +123,14 @@ public final class FreelancerService extends TransactionService {
             return Optional.of(f);
         }, "Greška pri čitanju freelancera po ID-u");
     }
+
+    /** Asinkrona inačica {@link #findAll()}; {@code cancel(true)} prekida učitavanje. */
+    public CompletableFuture<List<Freelancer>> findAllAsync() {
+        return async(this::findAll);
+    }
+
+    /** Asinkrona inačica {@link #findById(Long)}. */
+    public CompletableFuture<Optional<Freelancer>> findByIdAsync(Long id) {
+        return async(() -> findById(id));
+    }
 }
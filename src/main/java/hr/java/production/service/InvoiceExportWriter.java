@@ -0,0 +1,216 @@
+package hr.java.production.service;
+
+import hr.java.production.model.Address;
+import hr.java.production.model.Freelancer;
+import hr.java.production.model.Invoice;
+import hr.java.production.model.Payment;
+import hr.java.production.model.Service;
+import hr.java.production.service.InvoiceService.ExportFormat;
+import hr.java.production.service.InvoiceService.InvoiceView;
+import hr.java.production.util.CsvWriter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Zapisuje hidrirane račune u izvoznu datoteku, jedan po jedan, kroz međuspremnik nad
+ * NIO kanalom. CSV ima jedan redak po računu (stavke su sažete u jedan stupac), a JSON Lines
+ * jedan JSON objekt po retku sa stavkama kao nizom.
+ */
+abstract sealed class InvoiceExportWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    protected final Writer out;
+
+    private InvoiceExportWriter(WritableByteChannel channel) {
+        this.out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Otvara pisač za zadani format.
+     *
+     * @param format  format izvoza
+     * @param channel kanal u koji se piše; zatvara se zajedno s pisačem
+     * @return pisač izvoza
+     */
+    static InvoiceExportWriter open(ExportFormat format, WritableByteChannel channel) {
+        return switch (format) {
+            case CSV -> new Csv(channel);
+            case JSONL -> new JsonLines(channel);
+        };
+    }
+
+    /** Zapisuje zaglavlje datoteke (ako ga format ima). */
+    abstract void writeHeader() throws IOException;
+
+    /** Zapisuje jedan račun. */
+    abstract void write(InvoiceView view) throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private static String str(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static String address(Address a) {
+        if (a == null) return null;
+        return a.getStreet() + " " + a.getHouseNumber() + ", " + a.getPostalCode() + " " + a.getCity();
+    }
+
+    private static final class Csv extends InvoiceExportWriter {
+        private static final String[] HEADER = {
+                "invoice_id", "invoice_date", "due_date", "freelancer_id", "freelancer", "business_name",
+                "business_id_no", "email", "address", "service_count", "services", "total", "paid",
+                "paid_on", "amount_paid", "transaction_id"
+        };
+
+        private final CsvWriter csv = new CsvWriter(out, ';');
+        private final StringBuilder services = new StringBuilder();
+
+        private Csv(WritableByteChannel channel) {
+            super(channel);
+        }
+
+        @Override
+        void writeHeader() throws IOException {
+            csv.writeRecord(HEADER);
+        }
+
+        @Override
+        void write(InvoiceView view) throws IOException {
+            Invoice inv = view.invoice();
+            Freelancer f = inv.getFreelancer();
+            Payment p = view.payment();
+            services.setLength(0);
+            for (Service s : inv.getServices()) {
+                if (!services.isEmpty()) services.append(" | ");
+                services.append(s.getName()).append(" (").append(s.getQuantity())
+                        .append(" x ").append(s.getUnitFee().toPlainString()).append(')');
+            }
+            csv.writeRecord(
+                    str(inv.getId()),
+                    str(inv.getInvoiceDate()),
+                    str(inv.getDueDate()),
+                    str(f.getId()),
+                    f.getName(),
+                    f.getBusinessName(),
+                    f.getBusinessIdentificationNumber(),
+                    f.getEmail(),
+                    address(f.getAddress()),
+                    String.valueOf(inv.getLineCount()),
+                    services.toString(),
+                    inv.getTotalCost().toPlainString(),
+                    String.valueOf(view.isPaid()),
+                    p == null ? null : str(p.getPaidOn()),
+                    p == null ? null : p.getAmount().toPlainString(),
+                    p == null ? null : p.getTransactionId());
+        }
+    }
+
+    private static final class JsonLines extends InvoiceExportWriter {
+        private JsonLines(WritableByteChannel channel) {
+            super(channel);
+        }
+
+        @Override
+        void writeHeader() {
+            // JSON Lines nema zaglavlje
+        }
+
+        @Override
+        void write(InvoiceView view) throws IOException {
+            Invoice inv = view.invoice();
+            Freelancer f = inv.getFreelancer();
+            Payment p = view.payment();
+
+            out.write("{\"id\":");
+            out.write(str(inv.getId()));
+            field("invoiceDate", str(inv.getInvoiceDate()));
+            field("dueDate", str(inv.getDueDate()));
+
+            out.write(",\"freelancer\":{\"id\":");
+            out.write(str(f.getId()));
+            field("name", f.getName());
+            field("businessName", f.getBusinessName());
+            field("businessIdNo", f.getBusinessIdentificationNumber());
+            field("email", f.getEmail());
+            field("address", address(f.getAddress()));
+            out.write('}');
+
+            out.write(",\"services\":[");
+            boolean first = true;
+            for (Service s : inv.getServices()) {
+                if (!first) out.write(',');
+                first = false;
+                out.write("{\"name\":");
+                string(s.getName());
+                number("unitFee", s.getUnitFee());
+                out.write(",\"quantity\":");
+                out.write(str(s.getQuantity()));
+                out.write('}');
+            }
+            out.write(']');
+
+            number("total", inv.getTotalCost());
+            out.write(",\"paid\":");
+            out.write(String.valueOf(view.isPaid()));
+            out.write(",\"payment\":");
+            if (p == null) {
+                out.write("null");
+            } else {
+                out.write("{\"paidOn\":");
+                string(str(p.getPaidOn()));
+                number("amount", p.getAmount());
+                field("transactionId", p.getTransactionId());
+                out.write('}');
+            }
+            out.write("}\n");
+        }
+
+        private void field(String name, String value) throws IOException {
+            out.write(",\"");
+            out.write(name);
+            out.write("\":");
+            string(value);
+        }
+
+        private void number(String name, BigDecimal value) throws IOException {
+            out.write(",\"");
+            out.write(name);
+            out.write("\":");
+            out.write(value == null ? "null" : value.toPlainString());
+        }
+
+        private void string(String value) throws IOException {
+            if (value == null) {
+                out.write("null");
+                return;
+            }
+            out.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> out.write("\\\"");
+                    case '\\' -> out.write("\\\\");
+                    case '\n' -> out.write("\\n");
+                    case '\r' -> out.write("\\r");
+                    case '\t' -> out.write("\\t");
+                    default -> {
+                        if (c < 0x20) out.write(String.format("\\u%04x", (int) c));
+                        else out.write(c);
+                    }
+                }
+            }
+            out.write('"');
+        }
+    }
+}
@@ -8,18 +8,29 @@ import hr.java.production.model.Freelancer;
 import hr.java.production.model.Invoice;
 import hr.java.production.model.Payment;
 import hr.java.production.model.Service;
+import hr.java.production.model.Worker;
 import hr.java.production.repo.db.AddressDao;
 import hr.java.production.repo.db.FreelancerDao;
 import hr.java.production.repo.db.InvoiceDao;
 import hr.java.production.repo.db.PaymentDao;
 import hr.java.production.repo.db.ServiceDao;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public final class InvoiceService extends TransactionService {
     private static final String NO_INVOICE_ID = "Račun ne postoji: id=";
+    private static final int EXPORT_BATCH_SIZE = 1_000;
 
     private final InvoiceDao invoiceDao;
     private final ServiceDao serviceDao;
@@ -27,6 +38,9 @@ public final class InvoiceService extends TransactionService {
     private final FreelancerDao freelancerDao;
     private final AddressDao addressDao;
     private final ChangeLogger changeLogger;
+    private final ReferenceGraph<Invoice, Address> viewGraph;
+    private final OverdueTracker overdueTracker = OverdueTracker.getInstance();
+    private volatile HydrationMode hydrationMode = HydrationMode.BATCH;
 
     public InvoiceService(InvoiceDao invoiceDao,
                           ServiceDao serviceDao,
@@ -40,49 +54,63 @@ public final class InvoiceService extends TransactionService {
         this.freelancerDao = Objects.requireNonNull(freelancerDao);
         this.addressDao = Objects.requireNonNull(addressDao);
         this.changeLogger = Objects.requireNonNull(changeLogger);
+        this.viewGraph = ReferenceGraph.<Invoice>root()
+                .children(Invoice::getId, Invoice::setServices, serviceDao::findByInvoiceIds)
+                .ref(Invoice::getFreelancer, Invoice::setFreelancer, freelancerDao::findByIds)
+                .ref(Worker::getAddress, Worker::setAddress, addressDao::findByIds);
     }
 
     public InvoiceService() {
         this(new InvoiceDao(), new ServiceDao(), new PaymentDao(), new FreelancerDao(), new AddressDao(), new BinaryChangeLogger());
     }
 
+    public HydrationMode getHydrationMode() {
+        return hydrationMode;
+    }
+
+    /** Postavlja način hidracije koji koristi {@link #findAll()}. */
+    public void setHydrationMode(HydrationMode hydrationMode) {
+        this.hydrationMode = Objects.requireNonNull(hydrationMode);
+    }
+
     /* ---------------------------- write operations ---------------------------- */
 
 
     /** Kreira fakturu (+stavke) i vraća potpuno hidrirani pogled. */
     public Long save(Invoice invoice) throws DatabaseException {
-        return inTransaction(conn -> {
+        Long id = inTransaction(conn -> {
 
             if (invoice == null) throw new DatabaseException("Račun ne smije biti null.");
             if (invoice.getFreelancer() == null || invoice.getFreelancer().getId() == null) {
                 throw new DatabaseException("Račun mora imati postojećeg freelancera (ref id).");
             }
 
-            invoiceDao.save(conn, invoice);
+            invoiceDao.save(conn, invoice);   // uz zbroj i broj stavki iz liste
             Long invId = invoice.getId();
 
             // persist services if present
             List<Service> services = invoice.getServices();
             if (services != null) {
-                for (Service s : services) {
-                    s.setInvoiceId(invId);
-                    serviceDao.save(conn, s);
-                }
+                services.forEach(s -> s.setInvoiceId(invId));
+                serviceDao.saveAll(conn, services);
             }
-
-            changeLogger.logCreate(invoice);
             return invId;
-        }, "Greška pri kreiranju računa");
+        }, "Greška pri kreiranju računa", entities(invoice, invoice == null ? null : invoice.getServices()));
+        List<Service> services = invoice.getServices();
+        invoice.setTotals(invoice.calculateTotalCost(), services == null ? 0 : services.size());
+        changeLogger.logCreate(invoice);
+        overdueTracker.invoiceSaved(id, invoice.getDueDate());
+        return id;
     }
 
-    /** Ažurira fakturu, zamjenjuje stavke i vraća potpuno hidrirani pogled. */
+    /** Ažurira fakturu i usklađuje spremljene stavke s onima u danom računu. */
     public void update(Invoice updated) throws DatabaseException {
-        inTransaction(conn -> {
+        Invoice old = inTransaction(conn -> {
             if (updated == null) throw new DatabaseException("Račun ne smije biti null.");
             Long invId = updated.getId();
             if (invId == null) throw new DatabaseException("ID računa ne smije biti null.");
 
-            Invoice old = invoiceDao.findById(conn, invId)
+            Invoice stored = invoiceDao.findById(conn, invId)
                     .orElseThrow(() -> new DatabaseException(NO_INVOICE_ID + invId));
 
             if (updated.getFreelancer() == null || updated.getFreelancer().getId() == null) {
@@ -92,58 +120,213 @@ public final class InvoiceService extends TransactionService {
                 throw new DatabaseException("Freelancer ne postoji: id=" + updated.getFreelancer().getId());
             }
 
-            invoiceDao.update(conn, updated);
-
+            invoiceDao.update(conn, updated);   // uz zbroj i broj stavki iz nove liste
+            mergeServices(conn, invId, updated.getServices());
+            return stored;
+        }, "Greška pri ažuriranju računa", entities(null, updated == null ? null : updated.getServices()));
+        updated.setTotals(updated.calculateTotalCost(),
+                updated.getServices() == null ? 0 : updated.getServices().size());
+        changeLogger.logUpdate(old, updated);
+        overdueTracker.invoiceSaved(updated.getId(), updated.getDueDate());
+    }
 
-            serviceDao.deleteByInvoiceId(conn, invId);
-            List<Service> services = updated.getServices();
-            if (services != null) {
-                for (Service s : services) {
-                    s.setInvoiceId(invId);
-                    serviceDao.save(conn, s);
+    /**
+     * Usklađuje spremljene stavke računa s novom listom po ID-u stavke: nove stavke (bez ID-a)
+     * se umeću, promijenjene ažuriraju batchom, a uklonjene brišu jednom naredbom. Nepromijenjene
+     * stavke se ne diraju, pa ID-evi stavki ostaju stabilni.
+     * <p>
+     * Umetnute stavke dobivaju ID odmah nakon INSERT-a. Pozivatelj (npr. forma računa) drži
+     * iste objekte, pa {@link #update} predaje stavke transakciji koja im nakon neuspjeha
+     * (rollback ili ponavljanje) vraća ID na null; inače bi sljedeće spremanje javilo da
+     * stavka s nepostojećim ID-em ne pripada računu.
+     */
+    private void mergeServices(Connection conn, Long invId, List<Service> services) throws DatabaseException {
+        Map<Long, Service> stored = new HashMap<>();
+        for (Service s : serviceDao.findByInvoiceId(conn, invId)) stored.put(s.getId(), s);
+
+        List<Service> inserted = new ArrayList<>();
+        List<Service> changed = new ArrayList<>();
+        if (services != null) {
+            for (Service s : services) {
+                s.setInvoiceId(invId);
+                if (s.getId() == null) {
+                    inserted.add(s);
+                    continue;
+                }
+                Service old = stored.remove(s.getId());
+                if (old == null) {
+                    throw new DatabaseException("Stavka id=" + s.getId() + " ne pripada računu id=" + invId);
                 }
+                if (!sameContent(old, s)) changed.add(s);
             }
+        }
+
+        serviceDao.deleteByInvoiceIdAndIds(conn, invId, stored.keySet());
+        serviceDao.updateAll(conn, changed);
+        serviceDao.saveAll(conn, inserted);
+        log.debug("Invoice {} services: {} inserted, {} updated, {} deleted",
+                invId, inserted.size(), changed.size(), stored.size());
+    }
 
-            changeLogger.logUpdate(old, updated);
-            return null;
-        }, "Greška pri ažuriranju računa");
+    private static boolean sameContent(Service a, Service b) {
+        return Objects.equals(a.getName(), b.getName())
+                && Objects.equals(a.getQuantity(), b.getQuantity())
+                && (a.getUnitFee() == null ? b.getUnitFee() == null
+                    : b.getUnitFee() != null && a.getUnitFee().compareTo(b.getUnitFee()) == 0);
     }
 
-    /** Briše fakturu i sve povezane entitete. */
+    /** Briše fakturu; stavke i uplata brišu se kaskadno u istoj naredbi. */
     public void delete(Long invoiceId) throws DatabaseException {
-        inTransaction(conn -> {
-            Invoice old = invoiceDao.findById(conn, invoiceId)
-                    .orElseThrow(() -> new DatabaseException(NO_INVOICE_ID + invoiceId));
+        Invoice old = inTransaction(conn -> invoiceDao.deleteReturning(conn, invoiceId)
+                        .orElseThrow(() -> new DatabaseException(NO_INVOICE_ID + invoiceId)),
+                "Greška pri brisanju računa");
+        changeLogger.logDelete(old);
+        overdueTracker.invoiceDeleted(invoiceId);
+    }
 
-            serviceDao.deleteByInvoiceId(conn, invoiceId);
-            paymentDao.deleteByInvoiceId(conn, invoiceId);
-            invoiceDao.delete(conn, invoiceId);
+    /**
+     * Briše više faktura (npr. pri čišćenju arhive) sa stavkama i uplatama u jednoj transakciji.
+     * ID-evi koji ne postoje se preskaču.
+     *
+     * @param invoiceIds ID-evi faktura
+     * @return broj obrisanih faktura
+     * @throws DatabaseException ako brisanje ne uspije; tada se ništa ne briše
+     */
+    public int deleteInvoices(Set<Long> invoiceIds) throws DatabaseException {
+        if (invoiceIds == null || invoiceIds.isEmpty()) return 0;
+        List<Invoice> deleted = inTransaction(conn -> invoiceDao.deleteAllReturning(conn, invoiceIds),
+                "Greška pri skupnom brisanju računa");
+        changeLogger.logDeleteAll(deleted);
+        overdueTracker.invoicesDeleted(deleted.stream().map(Invoice::getId).toList());
+        log.info("Deleted {} of {} requested invoices", deleted.size(), invoiceIds.size());
+        return deleted.size();
+    }
 
-            changeLogger.logDelete(old);
-            return null;
-        }, "Greška pri brisanju računa");
+    /**
+     * Provjerava odgovaraju li spremljeni zbroj i broj stavki računa stvarnim stavkama
+     * (npr. nakon ručne izmjene tablice stavki) i po potrebi ih ponovno izračunava.
+     *
+     * @param repair treba li neusklađene račune ispraviti
+     * @return ID-evi neusklađenih računa
+     * @throws DatabaseException ako provjera ili ispravak ne uspiju
+     */
+    public List<Long> checkTotals(boolean repair) throws DatabaseException {
+        List<Long> inconsistent = inTransaction(conn -> {
+            List<Long> ids = invoiceDao.findInconsistentTotals(conn);
+            if (repair) invoiceDao.refreshTotals(conn, ids);
+            return ids;
+        }, "Greška pri provjeri zbroja stavki računa");
+        if (!inconsistent.isEmpty()) {
+            log.warn("{} invoices had stored totals out of sync with their services{}: {}", inconsistent.size(),
+                    repair ? " (rebuilt)" : "", inconsistent.size() > 20 ? inconsistent.subList(0, 20) + "..." : inconsistent);
+        }
+        return inconsistent;
     }
 
     /* ----------------------------- read operations ----------------------------- */
 
     /** Vraća potpuno hidriran Optional prikaz jednog računa. */
     public Optional<InvoiceView> findById(Long id) throws DatabaseException {
-        return inTransaction(conn -> {
+        return inReadOnly(conn -> {
             Optional<Invoice> base = invoiceDao.findById(conn, id);
             if (base.isEmpty()) return Optional.empty();
             return Optional.of(toView(conn, base.get()));   // single-invoice toView
         }, "Greška pri čitanju računa po ID-u");
     }
 
-    /** Vraća SVE račune potpuno hidrirane — koristi batch toView za nisku složenost i visoku izvedbu. */
+    /** Vraća SVE račune potpuno hidrirane, koristeći trenutno postavljeni način hidracije. */
     public List<InvoiceView> findAll() throws DatabaseException {
-        return inTransaction(conn -> {
-            List<Invoice> invoices = invoiceDao.findAll(conn);
-            if (invoices.isEmpty()) return List.of();
-            return toView(conn, invoices);
+        return findAll(hydrationMode);
+    }
+
+    /** Vraća SVE račune potpuno hidrirane zadanim načinom hidracije. */
+    public List<InvoiceView> findAll(HydrationMode mode) throws DatabaseException {
+        return inReadOnly(conn -> switch (mode) {
+            case BATCH -> {
+                List<Invoice> invoices = invoiceDao.findAll(conn);
+                yield invoices.isEmpty() ? List.<InvoiceView>of() : toView(conn, invoices);
+            }
+            case JOIN -> toViewJoined(conn);
         }, "Greška pri čitanju svih računa");
     }
 
+    /**
+     * Izvozi račune s freelancerom, stavkama, ukupnim iznosom i stanjem plaćanja u datoteku.
+     * Računi se čitaju kursorom i hidriraju u dijelovima od {@value #EXPORT_BATCH_SIZE}, a
+     * zapisuju odmah, pa potrošnja memorije ne ovisi o broju računa. Piše se u privremenu
+     * datoteku {@code <target>.part} koja se na kraju preimenuje u {@code target}.
+     *
+     * @param filter filter po datumu računa i freelanceru
+     * @param format format izvoza
+     * @param target odredišna datoteka; postojeća se zamjenjuje
+     * @return broj izvezenih računa
+     * @throws DatabaseException ako čitanje iz baze ili pisanje datoteke ne uspije
+     */
+    public long export(ExportFilter filter, ExportFormat format, Path target) throws DatabaseException {
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        long start = System.nanoTime();
+        long count;
+        try {
+            count = inReadOnly(conn -> exportTo(conn, filter, format, part), "Greška pri izvozu računa");
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            deleteQuietly(part);
+            throw new DatabaseException("Greška pri spremanju datoteke izvoza: " + target, e);
+        } catch (DatabaseException e) {
+            deleteQuietly(part);
+            throw e;
+        }
+        log.info("Exported {} invoices ({}, {}) to {} in {} ms", count, format, filter, target,
+                (System.nanoTime() - start) / 1_000_000);
+        return count;
+    }
+
+    private long exportTo(Connection conn, ExportFilter filter, ExportFormat format, Path part)
+            throws DatabaseException {
+        try (Stream<Invoice> invoices = invoiceDao.stream(conn, filter.from(), filter.to(),
+                     filter.freelancerId(), EXPORT_BATCH_SIZE);
+             InvoiceExportWriter out = InvoiceExportWriter.open(format, FileChannel.open(part,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+            out.writeHeader();
+            long written = 0;
+            List<Invoice> batch = new ArrayList<>(EXPORT_BATCH_SIZE);
+            Iterator<Invoice> it = invoices.iterator();
+            while (it.hasNext()) {
+                batch.add(it.next());
+                if (batch.size() < EXPORT_BATCH_SIZE && it.hasNext()) continue;
+                for (InvoiceView view : toView(conn, batch)) out.write(view);
+                written += batch.size();
+                batch.clear();
+            }
+            return written;
+        } catch (IOException e) {
+            throw new DatabaseException("Greška pri pisanju datoteke izvoza: " + part, e);
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete partial export file {}", file, e);
+        }
+    }
+
+    /** Asinkrona inačica {@link #export(ExportFilter, ExportFormat, Path)}. */
+    public CompletableFuture<Long> exportAsync(ExportFilter filter, ExportFormat format, Path target) {
+        return async(() -> export(filter, format, target));
+    }
+
+    /** Asinkrona inačica {@link #findAll()}; {@code cancel(true)} prekida učitavanje. */
+    public CompletableFuture<List<InvoiceView>> findAllAsync() {
+        return async(this::findAll);
+    }
+
+    /** Asinkrona inačica {@link #findById(Long)}. */
+    public CompletableFuture<Optional<InvoiceView>> findByIdAsync(Long id) {
+        return async(() -> findById(id));
+    }
+
     /* ----------------------------- toView helpers ----------------------------- */
 
     /** Single-invoice toView: loads Freelancer (+Address), Services, Payment. */
@@ -173,39 +356,11 @@ public final class InvoiceService extends TransactionService {
 
     private List<InvoiceView> toView(Connection conn, List<Invoice> invoices) throws DatabaseException {
         try {
-            Set<Long> invoiceIds = invoices.stream().map(Invoice::getId).collect(Collectors.toSet());
-            Set<Long> freelancerIds = invoices.stream()
-                    .map(inv -> inv.getFreelancer() != null ? inv.getFreelancer().getId() : null)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toSet());
-
-
-            Map<Long, Freelancer> freelancers = freelancerDao.findByIds(conn, freelancerIds);
-
-            Set<Long> addressIds = freelancers.values().stream()
-                    .map(f -> f.getAddress() != null ? f.getAddress().getId() : null)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toSet());
-            Map<Long, Address> addresses = addressDao.findByIds(conn, addressIds);
-
-            Map<Long, List<Service>> servicesByInv = serviceDao.findByInvoiceIds(conn, invoiceIds);
+            viewGraph.hydrate(conn, invoices);
 
+            Set<Long> invoiceIds = invoices.stream().map(Invoice::getId).collect(Collectors.toSet());
             Map<Long, Payment> paymentByInv = paymentDao.findByInvoiceIds(conn, invoiceIds);
 
-            for (Invoice inv : invoices) {
-                if (inv.getFreelancer() != null && inv.getFreelancer().getId() != null) {
-                    Freelancer f = freelancers.get(inv.getFreelancer().getId());
-                    if (f != null && f.getAddress() != null && f.getAddress().getId() != null) {
-                        Address a = addresses.get(f.getAddress().getId());
-                        if (a != null) f.setAddress(a);
-                    }
-                    if (f != null) inv.setFreelancer(f);
-                }
-                // services
-                List<Service> svcs = servicesByInv.get(inv.getId());
-                if (svcs != null) inv.setServices(svcs);
-            }
-
             List<InvoiceView> out = new ArrayList<>(invoices.size());
             for (Invoice inv : invoices) {
                 out.add(new InvoiceView(inv, paymentByInv.get(inv.getId())));
@@ -218,6 +373,65 @@ public final class InvoiceService extends TransactionService {
         }
     }
 
+    /**
+     * JOIN hidracija: jedan upit za račune s freelancerom, adresom i uplatom te jedan upit za
+     * sve stavke poredane po računu. Oba upita su poredana po ID-u računa pa se stavke
+     * spajaju s računima jednim prolazom, bez IN lista i bez pomoćne mape.
+     */
+    private List<InvoiceView> toViewJoined(Connection conn) throws DatabaseException {
+        List<InvoiceView> out = new ArrayList<>();
+        invoiceDao.forEachWithReferences(conn, row -> out.add(new InvoiceView(row.invoice(), row.payment())));
+
+        int[] cursor = {0};
+        serviceDao.forEachOrderedByInvoice(conn, s -> {
+            while (cursor[0] < out.size() && out.get(cursor[0]).invoice().getId() < s.getInvoiceId()) {
+                cursor[0]++;
+            }
+            if (cursor[0] < out.size()) {
+                Invoice inv = out.get(cursor[0]).invoice();
+                if (inv.getId().equals(s.getInvoiceId())) inv.getServices().add(s);
+            }
+        });
+        return out;
+    }
+
+    /**
+     * Način hidracije za {@link #findAll(HydrationMode)}.
+     * <ul>
+     *     <li>BATCH - računi pa freelanceri, adrese, stavke i uplate zasebnim upitima po skupu ID-eva</li>
+     *     <li>JOIN - jedan JOIN upit za račune s referencama i jedan upit za stavke</li>
+     * </ul>
+     */
+    public enum HydrationMode { BATCH, JOIN }
+
+    /** Format datoteke za {@link #export(ExportFilter, ExportFormat, Path)}. */
+    public enum ExportFormat { CSV, JSONL }
+
+    /**
+     * Filter izvoza računa; null vrijednost znači bez ograničenja.
+     *
+     * @param from         najraniji datum računa (uključivo)
+     * @param to           najkasniji datum računa (uključivo)
+     * @param freelancerId ID freelancera
+     */
+    public record ExportFilter(LocalDate from, LocalDate to, Long freelancerId) {
+
+        /** Filter bez ograničenja. */
+        public static ExportFilter all() {
+            return new ExportFilter(null, null, null);
+        }
+
+        /** Svi računi izdani u danoj godini. */
+        public static ExportFilter year(int year) {
+            return new ExportFilter(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31), null);
+        }
+
+        /** Isti filter ograničen na jednog freelancera. */
+        public ExportFilter forFreelancer(Long id) {
+            return new ExportFilter(from, to, id);
+        }
+    }
+
     /**
      * Predstavlja prikaz fakture sa svim relevantnim podacima, uključujući informacije o uplati.
      * Omogućuje provjeru statusa plaćenosti na temelju vezane uplate.
@@ -0,0 +1,292 @@
+package hr.java.production.service;
+
+import hr.java.production.exception.DatabaseException;
+import hr.java.production.repo.db.InvoiceDao;
+import hr.java.production.util.BackgroundScheduler;
+import hr.java.production.util.DbUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Prati neplaćene račune u memoriji, poredane po roku plaćanja, i obavještava pretplatnike
+ * kad se broj dospjelih neplaćenih računa promijeni: kad račun prijeđe rok plaćanja
+ * (jednokratni timer postavljen na sljedeći rok) ili kad se račun plati, obriše ili promijeni.
+ * <p>
+ * Stanje se učitava jednim upitom pri prvoj pretplati; nakon toga ga održavaju
+ * {@link InvoiceService} i {@link PaymentService} nakon uspješnog commita, bez upita
+ * prema bazi dok se ništa ne mijenja. Dok nema pretplatnika događaji se zanemaruju.
+ * <p>
+ * Događaji dolaze samo iz ovog procesa. Račune i uplate koje upišu drugi klijenti dijeljene
+ * baze (profil {@code tcp}) ili zasebni procesi poput {@code BulkImport} tracker ne vidi, pa
+ * se stanje periodički ponovno učitava iz baze svakih {@code overdue.reconcileIntervalMinutes}
+ * minuta (0 isključuje usklađivanje, što odgovara samo bazi s jednim klijentom).
+ */
+public final class OverdueTracker extends TransactionService {
+
+    /** Prima novi broj dospjelih neplaćenih računa. Poziva se pod zaključavanjem trackera i mora biti kratak. */
+    @FunctionalInterface
+    public interface Listener {
+        void overdueChanged(long overdueCount);
+    }
+
+    private static final OverdueTracker INSTANCE = new OverdueTracker(new InvoiceDao(), Clock.systemDefaultZone());
+    private static final String RECONCILE_INTERVAL_KEY = "overdue.reconcileIntervalMinutes";
+    private static final long DEFAULT_RECONCILE_MINUTES = 5;
+
+    private final InvoiceDao invoiceDao;
+    private final Clock clock;
+    private final BackgroundScheduler scheduler = BackgroundScheduler.getInstance();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /** Rok plaćanja svih računa (plaćenih i neplaćenih). */
+    private final Map<Long, LocalDate> dueDates = new HashMap<>();
+    private final Set<Long> paid = new HashSet<>();
+    /** Neplaćeni računi kojima rok još nije prošao, po roku plaćanja. */
+    private final TreeMap<LocalDate, Set<Long>> upcoming = new TreeMap<>();
+    /** Neplaćeni računi kojima je rok prošao. */
+    private final Set<Long> overdue = new HashSet<>();
+
+    private boolean loaded;
+    private long lastNotified = -1;
+    private BackgroundScheduler.Registration nextCrossing;
+    private LocalDate nextCrossingDay;
+    private BackgroundScheduler.Registration reconciler;
+
+    OverdueTracker(InvoiceDao invoiceDao, Clock clock) {
+        this.invoiceDao = Objects.requireNonNull(invoiceDao);
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    /**
+     * Vraća zajedničku instancu trackera.
+     *
+     * @return instanca trackera
+     */
+    public static OverdueTracker getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Prijavljuje pretplatnika i odmah mu javlja trenutni broj dospjelih računa.
+     * Prva pretplata učitava stanje iz baze.
+     *
+     * @param listener pretplatnik
+     * @throws DatabaseException ako se stanje ne može učitati
+     */
+    public synchronized void subscribe(Listener listener) throws DatabaseException {
+        Objects.requireNonNull(listener);
+        ensureLoaded();
+        listeners.add(listener);
+        listener.overdueChanged(overdue.size());
+    }
+
+    /**
+     * Odjavljuje pretplatnika.
+     *
+     * @param listener pretplatnik
+     */
+    public void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Vraća broj dospjelih neplaćenih računa.
+     *
+     * @return broj dospjelih neplaćenih računa
+     * @throws DatabaseException ako se stanje ne može učitati
+     */
+    public synchronized long getOverdueCount() throws DatabaseException {
+        ensureLoaded();
+        return overdue.size();
+    }
+
+    /* ------------------------ događaji servisnog sloja ------------------------ */
+
+    /** Račun je kreiran ili mu je promijenjen rok plaćanja. */
+    synchronized void invoiceSaved(long invoiceId, LocalDate dueDate) {
+        if (!loaded) return;
+        unschedule(invoiceId);
+        dueDates.put(invoiceId, dueDate);
+        schedule(invoiceId);
+        changed();
+    }
+
+    /** Račun je obrisan (zajedno s uplatom). */
+    synchronized void invoiceDeleted(long invoiceId) {
+        if (!loaded) return;
+        unschedule(invoiceId);
+        dueDates.remove(invoiceId);
+        paid.remove(invoiceId);
+        changed();
+    }
+
+    /** Računi su obrisani skupno; slušači se obavještavaju jednom. */
+    synchronized void invoicesDeleted(Collection<Long> invoiceIds) {
+        if (!loaded) return;
+        for (long invoiceId : invoiceIds) {
+            unschedule(invoiceId);
+            dueDates.remove(invoiceId);
+            paid.remove(invoiceId);
+        }
+        changed();
+    }
+
+    /** Za račun je zabilježena uplata. */
+    synchronized void paymentSaved(long invoiceId) {
+        if (!loaded) return;
+        unschedule(invoiceId);
+        paid.add(invoiceId);
+        changed();
+    }
+
+    /** Uplata za račun je obrisana ili premještena na drugi račun. */
+    synchronized void paymentDeleted(long invoiceId) {
+        if (!loaded) return;
+        paid.remove(invoiceId);
+        schedule(invoiceId);
+        changed();
+    }
+
+    /* --------------------------------- interno -------------------------------- */
+
+    private void ensureLoaded() throws DatabaseException {
+        if (loaded) return;
+        Map<Long, LocalDate> loadedDueDates = new HashMap<>();
+        Set<Long> loadedPaid = new HashSet<>();
+        load(loadedDueDates, loadedPaid);
+        replaceState(loadedDueDates, loadedPaid);
+        loaded = true;
+        lastNotified = overdue.size();
+        rescheduleTimer();
+        startReconciler();
+        log.debug("Overdue tracker loaded {} invoices, {} overdue", dueDates.size(), overdue.size());
+    }
+
+    private void load(Map<Long, LocalDate> loadedDueDates, Set<Long> loadedPaid) throws DatabaseException {
+        inReadOnly(conn -> {
+            invoiceDao.forEachDueState(conn, row -> {
+                loadedDueDates.put(row.invoiceId(), row.dueDate());
+                if (row.paid()) loadedPaid.add(row.invoiceId());
+            });
+            return null;
+        }, "Greška pri učitavanju rokova plaćanja");
+    }
+
+    private void replaceState(Map<Long, LocalDate> loadedDueDates, Set<Long> loadedPaid) {
+        dueDates.clear();
+        dueDates.putAll(loadedDueDates);
+        paid.clear();
+        paid.addAll(loadedPaid);
+        upcoming.clear();
+        overdue.clear();
+        for (long invoiceId : dueDates.keySet()) schedule(invoiceId);
+    }
+
+    private void startReconciler() {
+        long minutes = DEFAULT_RECONCILE_MINUTES;
+        try {
+            minutes = Long.parseLong(DbUtils.getProperty(RECONCILE_INTERVAL_KEY, String.valueOf(DEFAULT_RECONCILE_MINUTES)));
+        } catch (NumberFormatException | DatabaseException e) {
+            log.warn("Invalid {}, using {} min", RECONCILE_INTERVAL_KEY, DEFAULT_RECONCILE_MINUTES, e);
+        }
+        if (minutes <= 0) return;
+        Duration period = Duration.ofMinutes(minutes);
+        reconciler = scheduler.register("overdue-reconcile", period, period, period.dividedBy(10), this::reconcile);
+    }
+
+    /**
+     * Ponovno učitava stanje iz baze, kako bi se vidjele izmjene drugih klijenata. Upit se
+     * izvršava izvan zaključavanja trackera; događaj iz ovog procesa koji stigne za vrijeme
+     * upita može biti pregažen starijim stanjem, ali ga sljedeće usklađivanje ispravlja.
+     */
+    private void reconcile() {
+        if (listeners.isEmpty()) return;
+        Map<Long, LocalDate> loadedDueDates = new HashMap<>();
+        Set<Long> loadedPaid = new HashSet<>();
+        try {
+            load(loadedDueDates, loadedPaid);
+        } catch (DatabaseException e) {
+            log.warn("Overdue tracker reconcile failed, keeping current state", e);
+            return;
+        }
+        synchronized (this) {
+            long before = overdue.size();
+            replaceState(loadedDueDates, loadedPaid);
+            if (overdue.size() != before) {
+                log.debug("Overdue tracker reconciled: {} -> {} overdue", before, overdue.size());
+            }
+            changed();
+        }
+    }
+
+    /** Svrstava neplaćeni račun u dospjele ili u red čekanja po roku. */
+    private void schedule(long invoiceId) {
+        LocalDate due = dueDates.get(invoiceId);
+        if (due == null || paid.contains(invoiceId)) return;
+        if (due.isBefore(LocalDate.now(clock))) {
+            overdue.add(invoiceId);
+        } else {
+            upcoming.computeIfAbsent(due, d -> new HashSet<>()).add(invoiceId);
+        }
+    }
+
+    private void unschedule(long invoiceId) {
+        if (overdue.remove(invoiceId)) return;
+        LocalDate due = dueDates.get(invoiceId);
+        if (due == null) return;
+        Set<Long> ids = upcoming.get(due);
+        if (ids != null && ids.remove(invoiceId) && ids.isEmpty()) upcoming.remove(due);
+    }
+
+    /** Premješta u dospjele sve račune kojima je rok prošao i javlja promjenu. */
+    private synchronized void advance() {
+        nextCrossing = null;
+        LocalDate today = LocalDate.now(clock);
+        Iterator<Map.Entry<LocalDate, Set<Long>>> it = upcoming.headMap(today, false).entrySet().iterator();
+        while (it.hasNext()) {
+            overdue.addAll(it.next().getValue());
+            it.remove();
+        }
+        changed();
+    }
+
+    private void changed() {
+        rescheduleTimer();
+        long count = overdue.size();
+        if (count == lastNotified) return;
+        lastNotified = count;
+        for (Listener l : listeners) {
+            try {
+                l.overdueChanged(count);
+            } catch (RuntimeException e) {
+                log.warn("Overdue listener failed", e);
+            }
+        }
+    }
+
+    /** Postavlja timer na početak dana nakon najranijeg roka među nedospjelim računima. */
+    private void rescheduleTimer() {
+        LocalDate crossingDay = upcoming.isEmpty() ? null : upcoming.firstKey().plusDays(1);
+        if (Objects.equals(crossingDay, nextCrossingDay) && nextCrossing != null) return;
+
+        if (nextCrossing != null) nextCrossing.cancel();
+        nextCrossing = null;
+        nextCrossingDay = crossingDay;
+        if (crossingDay == null) return;
+
+        Duration delay = Duration.between(clock.instant(), crossingDay.atStartOfDay(clock.getZone()).toInstant());
+        nextCrossing = scheduler.runOnce("overdue-due-date-crossing", delay, this::advance);
+    }
+}
@@ -3,19 +3,19 @@ package hr.java.production.service;
 import hr.java.production.exception.DatabaseException;
 import hr.java.production.log.BinaryChangeLogger;
 import hr.java.production.log.ChangeLogger;
-import hr.java.production.model.Freelancer;
+import hr.java.production.model.Address;
 import hr.java.production.model.Invoice;
 import hr.java.production.model.Payment;
+import hr.java.production.model.Worker;
 import hr.java.production.repo.db.AddressDao;
 import hr.java.production.repo.db.FreelancerDao;
 import hr.java.production.repo.db.InvoiceDao;
 import hr.java.production.repo.db.PaymentDao;
 
-import java.sql.Connection;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service for Payment domain (1↔1 with Invoice).
@@ -28,11 +28,19 @@ public final class PaymentService extends TransactionService {
     private static final String NO_INVOICE_ID  = "Račun ne postoji: id=";
     private static final String DUP_PAYMENT    = "Račun već ima evidentiranu uplatu: invoiceId=";
 
+    /** SQLSTATE i ograničenja (V1, V3) kojima baza provodi 1↔1 vezu uplate i računa. */
+    private static final String UNIQUE_VIOLATION   = "23505";
+    private static final String NO_PARENT_ROW      = "23506";
+    private static final String UX_PAYMENT_INVOICE = "UX_PAYMENT_INVOICE";
+    private static final String FK_PAYMENT_INVOICE = "FK_PAYMENT_INVOICE";
+
     private final PaymentDao paymentDao;
     private final InvoiceDao invoiceDao;
     private final FreelancerDao freelancerDao;
     private final AddressDao addressDao;
     private final ChangeLogger changeLogger;
+    private final ReferenceGraph<Payment, Address> detailGraph;
+    private final OverdueTracker overdueTracker = OverdueTracker.getInstance();
 
     public PaymentService(PaymentDao paymentDao,
                           InvoiceDao invoiceDao,
@@ -44,6 +52,10 @@ public final class PaymentService extends TransactionService {
         this.freelancerDao = Objects.requireNonNull(freelancerDao);
         this.addressDao    = Objects.requireNonNull(addressDao);
         this.changeLogger  = Objects.requireNonNull(changeLogger);
+        this.detailGraph   = ReferenceGraph.<Payment>root()
+                .ref(Payment::getInvoice, Payment::setInvoice, invoiceDao::findByIds)
+                .ref(Invoice::getFreelancer, Invoice::setFreelancer, freelancerDao::findByIds)
+                .ref(Worker::getAddress, Worker::setAddress, addressDao::findByIds);
     }
 
     /** Default wiring. */
@@ -53,122 +65,124 @@ public final class PaymentService extends TransactionService {
 
     /* ---------------------------- write operations ---------------------------- */
 
-    /** Creates a payment; enforces 1↔1 by checking if the invoice already has a payment. Returns new payment ID. */
+    /**
+     * Creates a payment with a single INSERT. 1↔1 and the invoice reference are enforced by the
+     * unique index and FK on payment(invoice_id); violations are translated into DUP_PAYMENT /
+     * NO_INVOICE_ID. Returns new payment ID.
+     */
     public Long save(Payment payment) throws DatabaseException {
-        return inTransaction(conn -> {
+        Long id = inTransaction(conn -> {
             if (payment == null) throw new DatabaseException("Uplata ne smije biti null.");
             if (payment.getInvoice() == null || payment.getInvoice().getId() == null) {
                 throw new DatabaseException("Uplata mora imati referencu na račun (id).");
             }
             Long invoiceId = payment.getInvoice().getId();
 
-            if (invoiceDao.findById(conn, invoiceId).isEmpty()) {
-                throw new DatabaseException(NO_INVOICE_ID + invoiceId);
-            }
-            if (paymentDao.findByInvoiceId(conn, invoiceId).isPresent()) {
-                throw new DatabaseException(DUP_PAYMENT + invoiceId);
+            try {
+                paymentDao.save(conn, payment);
+            } catch (DatabaseException e) {
+                throw translateViolation(e, invoiceId);
             }
-
-
-            paymentDao.save(conn, payment);
-            changeLogger.logCreate(payment);
             return payment.getId();
-        }, "Greška pri kreiranju uplate");
+        }, "Greška pri kreiranju uplate", entities(payment, null));
+        changeLogger.logCreate(payment);
+        overdueTracker.paymentSaved(payment.getInvoice().getId());
+        return id;
     }
 
-    /** Updates a payment. If invoice ref changes, still enforces 1↔1 on the new invoice. */
+    /** Updates a payment. If invoice ref changes, 1↔1 on the new invoice is enforced by the constraints. */
     public void update(Payment updated) throws DatabaseException {
-        inTransaction(conn -> {
+        Payment old = inTransaction(conn -> {
             if (updated == null) throw new DatabaseException("Uplata ne smije biti null.");
             Long id = updated.getId();
             if (id == null) throw new DatabaseException("ID uplate ne smije biti null.");
 
-            Payment old = paymentDao.findById(conn, id)
+            Payment stored = paymentDao.findById(conn, id)
                     .orElseThrow(() -> new DatabaseException(NO_PAYMENT_ID + id));
 
             if (updated.getInvoice() == null || updated.getInvoice().getId() == null) {
                 throw new DatabaseException("Uplata mora imati referencu na račun (id).");
             }
-            Long newInvoiceId = updated.getInvoice().getId();
-
-            if (!old.getInvoice().getId().equals(newInvoiceId)) {
-                if (invoiceDao.findById(conn, newInvoiceId).isEmpty()) {
-                    throw new DatabaseException(NO_INVOICE_ID + newInvoiceId);
-                }
-                if (paymentDao.findByInvoiceId(conn, newInvoiceId).isPresent()) {
-                    throw new DatabaseException(DUP_PAYMENT + newInvoiceId);
-                }
-            }
 
-
-            paymentDao.update(conn, updated);
-            changeLogger.logUpdate(old, updated);
-            return null;
+            try {
+                paymentDao.update(conn, updated);
+            } catch (DatabaseException e) {
+                throw translateViolation(e, updated.getInvoice().getId());
+            }
+            return stored;
         }, "Greška pri ažuriranju uplate");
+        changeLogger.logUpdate(old, updated);
+        Long oldInvoiceId = old.getInvoice().getId();
+        Long newInvoiceId = updated.getInvoice().getId();
+        if (!oldInvoiceId.equals(newInvoiceId)) {
+            overdueTracker.paymentDeleted(oldInvoiceId);
+            overdueTracker.paymentSaved(newInvoiceId);
+        }
+    }
+
+    /** Maps a unique/FK violation on payment(invoice_id) to the user-facing message; other errors pass through. */
+    private static DatabaseException translateViolation(DatabaseException e, Long invoiceId) {
+        if (violates(e, UNIQUE_VIOLATION, UX_PAYMENT_INVOICE)) return new DatabaseException(DUP_PAYMENT + invoiceId, e);
+        if (violates(e, NO_PARENT_ROW, FK_PAYMENT_INVOICE)) return new DatabaseException(NO_INVOICE_ID + invoiceId, e);
+        return e;
     }
 
     /** Deletes a payment by its ID. */
     public void delete(Long paymentId) throws DatabaseException {
-        inTransaction(conn -> {
+        Payment removed = inTransaction(conn -> {
             Payment old = paymentDao.findById(conn, paymentId)
                     .orElseThrow(() -> new DatabaseException(NO_PAYMENT_ID + paymentId));
             paymentDao.delete(conn, paymentId);
-            changeLogger.logDelete(old);
-            return null;
+            return old;
         }, "Greška pri brisanju uplate");
+        changeLogger.logDelete(removed);
+        overdueTracker.paymentDeleted(removed.getInvoice().getId());
     }
 
     /* ----------------------------- read operations ----------------------------- */
 
     /** Hydrated read by payment ID. Returns Payment + Invoice + Freelancer + Address. */
     public Optional<Payment> findById(Long id) throws DatabaseException {
-        return inTransaction(conn -> {
+        return inReadOnly(conn -> {
             Optional<Payment> p = paymentDao.findById(conn, id);
             if (p.isEmpty()) return Optional.empty();
-            return Optional.of(buildDetailed(conn, p.get()));
+            detailGraph.hydrate(conn, List.of(p.get()));
+            return p;
         }, "Greška pri čitanju uplate po ID-u");
     }
 
     /** 1↔1: returns a fully hydrated Payment by invoiceId. */
     public Optional<Payment> findByInvoiceId(Long invoiceId) throws DatabaseException {
-        return inTransaction(conn -> {
+        return inReadOnly(conn -> {
             Optional<Payment> p = paymentDao.findByInvoiceId(conn, invoiceId);
             if (p.isEmpty()) return Optional.empty();
-            return Optional.of(buildDetailed(conn, p.get()));
+            detailGraph.hydrate(conn, List.of(p.get()));
+            return p;
         }, "Greška pri čitanju uplate po ID-u računa");
     }
 
-    /** Returns all payments fully hydrated (simple per-row hydration). */
+    /** Returns all payments fully hydrated (batch hydration: one query per graph level). */
     public List<Payment> findAll() throws DatabaseException {
-        return inTransaction(conn -> {
+        return inReadOnly(conn -> {
             List<Payment> payments = paymentDao.findAll(conn);
             if (payments.isEmpty()) return List.of();
-            List<Payment> out = new ArrayList<>(payments.size());
-            for (Payment p : payments) out.add(buildDetailed(conn, p));
-            return out;
+            detailGraph.hydrate(conn, payments);
+            return payments;
         }, "Greška pri dohvaćanju svih uplata");
     }
 
-    /* ----------------------------- tiny local helper ----------------------------- */
-
-
-    private Payment buildDetailed(Connection conn, Payment payment) throws DatabaseException {
-        Long invoiceId = (payment.getInvoice() != null) ? payment.getInvoice().getId() : null;
-        if (invoiceId == null) return payment;
-
-        // Load full invoice
-        Invoice invoice = invoiceDao.findById(conn, invoiceId).orElse(null);
-        if (invoice != null && invoice.getFreelancer() != null && invoice.getFreelancer().getId() != null) {
-            Long freelancerId = invoice.getFreelancer().getId();
-            Freelancer freelancer = freelancerDao.findById(conn, freelancerId).orElse(null);
-            if (freelancer != null && freelancer.getAddress() != null && freelancer.getAddress().getId() != null) {
-                addressDao.findById(conn, freelancer.getAddress().getId()).ifPresent(freelancer::setAddress);
-            }
-            if (freelancer != null) invoice.setFreelancer(freelancer);
-        }
+    /** Asinkrona inačica {@link #findAll()}; {@code cancel(true)} prekida učitavanje. */
+    public CompletableFuture<List<Payment>> findAllAsync() {
+        return async(this::findAll);
+    }
 
-        payment.setInvoice(invoice);
-        return payment;
+    /** Asinkrona inačica {@link #findById(Long)}. */
+    public CompletableFuture<Optional<Payment>> findByIdAsync(Long id) {
+        return async(() -> findById(id));
     }
 
+    /** Asinkrona inačica {@link #findByInvoiceId(Long)}. */
+    public CompletableFuture<Optional<Payment>> findByInvoiceIdAsync(Long invoiceId) {
+        return async(() -> findByInvoiceId(invoiceId));
+    }
 }
@@ -0,0 +1,161 @@
+package hr.java.production.service;
+
+import hr.java.production.exception.DatabaseException;
+import hr.java.production.model.Entity;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Deklarativni opis grafa referenci koji se hidrira skupno (set-based): za svaku razinu grafa
+ * skupe se ID-evi referenci svih objekata i učitaju jednim pozivom {@code findByIds} /
+ * {@code findByInvoiceIds}, umjesto po jednog upita za svaki redak (N+1).
+ * <p>
+ * Objekti koji pokazuju na isti ID dobivaju istu instancu reference, a sljedeća razina
+ * grafa hidrira samo te jedinstvene instance.
+ * <pre>{@code
+ * ReferenceGraph.<Payment>root()
+ *         .ref(Payment::getInvoice, Payment::setInvoice, invoiceDao::findByIds)
+ *         .ref(Invoice::getFreelancer, Invoice::setFreelancer, freelancerDao::findByIds)
+ *         .ref(Freelancer::getAddress, Freelancer::setAddress, addressDao::findByIds);
+ * }</pre>
+ *
+ * @param <R> tip korijenskih objekata koji se hidriraju
+ * @param <L> tip objekata na trenutnoj (posljednjoj) razini grafa
+ */
+final class ReferenceGraph<R, L> {
+
+    /**
+     * Učitava objekte po skupu ključeva i vraća mapu ključ -> objekt (ili lista objekata).
+     *
+     * @param <V> tip učitane vrijednosti
+     */
+    @FunctionalInterface
+    interface BatchLoader<V> {
+        Map<Long, V> load(Connection conn, Set<Long> ids) throws SQLException, DatabaseException;
+    }
+
+    private interface Step {
+        List<Object> apply(Connection conn, List<Object> owners) throws SQLException, DatabaseException;
+    }
+
+    private final List<Step> steps;
+
+    private ReferenceGraph(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Započinje opis grafa za korijenske objekte tipa R.
+     *
+     * @param <R> tip korijenskih objekata
+     * @return prazan graf
+     */
+    static <R> ReferenceGraph<R, R> root() {
+        return new ReferenceGraph<>(List.of());
+    }
+
+    /**
+     * Dodaje referencu "više-prema-jedan" na trenutnoj razini i spušta se na razinu referenci.
+     *
+     * @param getter vraća referencu (npr. {@code Freelancer.ref(id)}) iz vlasnika
+     * @param setter postavlja potpuno učitanu referencu na vlasnika
+     * @param loader učitava reference po skupu ID-eva
+     * @param <N>    tip reference
+     * @return graf čija je trenutna razina tip reference
+     */
+    <N extends Entity> ReferenceGraph<R, N> ref(Function<? super L, ? extends N> getter,
+                                               BiConsumer<? super L, ? super N> setter,
+                                               BatchLoader<? extends N> loader) {
+        Step step = (conn, owners) -> {
+            Set<Long> ids = new HashSet<>();
+            for (Object owner : owners) {
+                N ref = getter.apply(cast(owner));
+                if (ref != null && ref.getId() != null) ids.add(ref.getId());
+            }
+            if (ids.isEmpty()) return List.of();
+
+            Map<Long, ? extends N> loaded = loader.load(conn, ids);
+            for (Object owner : owners) {
+                N ref = getter.apply(cast(owner));
+                if (ref == null || ref.getId() == null) continue;
+                N full = loaded.get(ref.getId());
+                if (full != null) setter.accept(cast(owner), full);
+            }
+            return new ArrayList<>(loaded.values());
+        };
+        return new ReferenceGraph<>(append(step));
+    }
+
+    /**
+     * Dodaje kolekciju "jedan-prema-više" na trenutnoj razini (npr. stavke računa).
+     * Trenutna razina grafa ostaje ista.
+     *
+     * @param keyOf  vraća ključ vlasnika po kojem se učitava kolekcija
+     * @param setter postavlja učitanu listu na vlasnika (praznu ako nema elemenata)
+     * @param loader učitava liste po skupu ključeva
+     * @param <C>    tip elemenata kolekcije
+     * @return graf s istom trenutnom razinom
+     */
+    <C> ReferenceGraph<R, L> children(Function<? super L, Long> keyOf,
+                                      BiConsumer<? super L, List<C>> setter,
+                                      BatchLoader<List<C>> loader) {
+        Step step = (conn, owners) -> {
+            Set<Long> keys = new HashSet<>();
+            for (Object owner : owners) {
+                Long key = keyOf.apply(cast(owner));
+                if (key != null) keys.add(key);
+            }
+            Map<Long, List<C>> loaded = keys.isEmpty() ? Map.of() : loader.load(conn, keys);
+            for (Object owner : owners) {
+                Long key = keyOf.apply(cast(owner));
+                if (key == null) continue;
+                List<C> children = loaded.get(key);
+                setter.accept(cast(owner), children != null ? children : new ArrayList<>());
+            }
+            return owners;
+        };
+        return new ReferenceGraph<>(append(step));
+    }
+
+    /**
+     * Hidrira dane korijenske objekte prema opisu grafa. Broj upita jednak je broju koraka
+     * grafa, neovisno o broju objekata.
+     *
+     * @param conn  veza na bazu podataka
+     * @param roots korijenski objekti
+     * @throws DatabaseException ako dođe do greške pri učitavanju
+     */
+    void hydrate(Connection conn, Collection<? extends R> roots) throws DatabaseException {
+        Objects.requireNonNull(roots);
+        List<Object> level = new ArrayList<>(roots);
+        try {
+            for (Step step : steps) {
+                if (level.isEmpty()) return;
+                level = step.apply(conn, level);
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Greška pri skupnoj hidraciji referenci", e);
+        }
+    }
+
+    private List<Step> append(Step step) {
+        List<Step> next = new ArrayList<>(steps);
+        next.add(step);
+        return List.copyOf(next);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <X> X cast(Object o) {
+        return (X) o;
+    }
+}
@@ -0,0 +1,105 @@
+package hr.java.production.service;
+
+import hr.java.production.exception.DatabaseException;
+import hr.java.production.repo.db.ReportDao;
+import hr.java.production.repo.db.ReportDao.FreelancerPayout;
+import hr.java.production.repo.db.ReportDao.Granularity;
+import hr.java.production.repo.db.ReportDao.PaymentDelay;
+import hr.java.production.repo.db.ReportDao.PeriodBalance;
+import hr.java.production.repo.db.ReportDao.ServiceRevenue;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Izvještaji o isplatama, fakturiranom i plaćenom iznosu, uslugama i vremenu plaćanja.
+ * Svaki izvještaj je jedan agregacijski upit u bazi (vidi {@link ReportDao}), izvršen na
+ * vezi samo za čitanje.
+ */
+public final class ReportService extends TransactionService {
+    private final ReportDao reportDao;
+
+    public ReportService(ReportDao reportDao) {
+        this.reportDao = Objects.requireNonNull(reportDao);
+    }
+
+    public ReportService() {
+        this(new ReportDao());
+    }
+
+    /** Isplate po freelanceru i mjesecu, prema datumu uplate. */
+    public List<FreelancerPayout> payoutsPerFreelancer(ReportFilter filter) throws DatabaseException {
+        return payoutsPerFreelancer(filter, Granularity.MONTH);
+    }
+
+    /** Isplate po freelanceru i razdoblju, prema datumu uplate. */
+    public List<FreelancerPayout> payoutsPerFreelancer(ReportFilter filter, Granularity granularity)
+            throws DatabaseException {
+        Objects.requireNonNull(granularity);
+        return inReadOnly(conn -> reportDao.findPayouts(conn, filter.from(), filter.to(), filter.freelancerId(),
+                granularity), "Greška pri izradi izvještaja o isplatama");
+    }
+
+    /** Fakturirani i plaćeni iznos po razdoblju izdavanja računa. */
+    public List<PeriodBalance> invoicedVsPaid(ReportFilter filter, Granularity granularity) throws DatabaseException {
+        Objects.requireNonNull(granularity);
+        return inReadOnly(conn -> reportDao.findInvoicedVsPaid(conn, filter.from(), filter.to(), filter.freelancerId(),
+                granularity), "Greška pri izradi izvještaja o fakturiranom i plaćenom iznosu");
+    }
+
+    /**
+     * Usluge s najvećim prihodom na računima izdanima u razdoblju filtra.
+     *
+     * @param filter razdoblje i freelancer
+     * @param limit  najveći broj usluga (barem 1)
+     * @return usluge poredane po prihodu silazno
+     * @throws DatabaseException ako izrada izvještaja ne uspije
+     */
+    public List<ServiceRevenue> topServices(ReportFilter filter, int limit) throws DatabaseException {
+        if (limit < 1) throw new IllegalArgumentException("Broj usluga mora biti barem 1");
+        return inReadOnly(conn -> reportDao.findTopServices(conn, filter.from(), filter.to(), filter.freelancerId(),
+                limit), "Greška pri izradi izvještaja o uslugama");
+    }
+
+    /** Prosječno vrijeme od izdavanja do plaćanja računa po razdoblju izdavanja. */
+    public List<PaymentDelay> daysToPay(ReportFilter filter, Granularity granularity) throws DatabaseException {
+        Objects.requireNonNull(granularity);
+        return inReadOnly(conn -> reportDao.findDaysToPay(conn, filter.from(), filter.to(), filter.freelancerId(),
+                granularity), "Greška pri izradi izvještaja o vremenu plaćanja");
+    }
+
+    /**
+     * Parametri izvještaja. Razdoblje je obavezno, jer se izvještaji izvršavaju nad indeksom
+     * po datumu.
+     *
+     * @param from         prvi dan (uključivo)
+     * @param to           zadnji dan (uključivo)
+     * @param freelancerId ID freelancera ili null za sve
+     */
+    public record ReportFilter(LocalDate from, LocalDate to, Long freelancerId) {
+
+        public ReportFilter {
+            Objects.requireNonNull(from, "from");
+            Objects.requireNonNull(to, "to");
+            if (from.isAfter(to)) {
+                throw new IllegalArgumentException("Početni datum izvještaja je nakon završnog: " + from + " > " + to);
+            }
+        }
+
+        /** Razdoblje od danog do danog datuma, za sve freelancere. */
+        public static ReportFilter between(LocalDate from, LocalDate to) {
+            return new ReportFilter(from, to, null);
+        }
+
+        /** Cijela dana godina, za sve freelancere. */
+        public static ReportFilter year(int year) {
+            return between(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31));
+        }
+
+        /** Isti filter ograničen na jednog freelancera. */
+        public ReportFilter forFreelancer(Long id) {
+            return new ReportFilter(from, to, id);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package hr.java.production.service;
+
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Pravilo ponavljanja transakcije nakon prolazne greške baze (istek čekanja na zaključavanje,
+ * deadlock, istovremena izmjena retka). Razmak između pokušaja raste eksponencijalno do
+ * gornje granice, uz slučajni pomak kako se sukobljene transakcije ne bi ponovno sudarile.
+ */
+public final class RetryPolicy {
+
+    /** SQLState kodovi H2 baze koji označavaju prolazni sukob zaključavanja. */
+    private static final Set<String> TRANSIENT_SQL_STATES = Set.of(
+            "HYT00", // istek čekanja na zaključavanje (LOCK_TIMEOUT)
+            "40001", // deadlock
+            "90131"  // istovremena izmjena istog retka
+    );
+
+    /** Pravilo bez ponavljanja: posao se izvršava samo jednom. */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0);
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    /**
+     * Stvara pravilo ponavljanja.
+     *
+     * @param maxAttempts          najveći broj pokušaja (uključujući prvi), najmanje 1
+     * @param initialBackoffMillis razmak prije drugog pokušaja u milisekundama
+     * @param maxBackoffMillis     gornja granica razmaka u milisekundama
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts mora biti barem 1");
+        if (initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("Neispravan raspon čekanja između pokušaja");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Provjerava je li greška (ili neki njezin uzrok) prolazna greška baze nakon koje
+     * ponovljena transakcija ima smisla.
+     *
+     * @param error greška nastala pri izvršavanju transakcije
+     * @return true ako je greška prolazna
+     */
+    public boolean isTransient(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql && sql.getSQLState() != null
+                    && TRANSIENT_SQL_STATES.contains(sql.getSQLState())) {
+                return true;
+            }
+            if (t.getCause() == t) break;
+        }
+        return false;
+    }
+
+    /**
+     * Vraća razmak prije sljedećeg pokušaja: {@code initial * 2^(attempt-1)}, ograničeno na
+     * {@code maxBackoffMillis}, pa slučajno odabrano između pola i pune vrijednosti.
+     *
+     * @param attempt redni broj pokušaja koji je upravo propao (od 1)
+     * @return razmak u milisekundama
+     */
+    public long backoffMillis(int attempt) {
+        int shift = Math.min(attempt - 1, 30);
+        long delay = Math.min(maxBackoffMillis, initialBackoffMillis << shift);
+        if (delay <= 1) return delay;
+        return ThreadLocalRandom.current().nextLong(delay / 2, delay + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy[maxAttempts=" + maxAttempts + ", initialBackoffMillis=" + initialBackoffMillis
+                + ", maxBackoffMillis=" + maxBackoffMillis + "]";
+    }
+}
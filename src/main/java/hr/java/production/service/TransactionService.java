@@ -2,12 +2,24 @@ package hr.java.production.service;
 
 import hr.java.production.exception.DatabaseConnectionException;
 import hr.java.production.exception.DatabaseException;
+import hr.java.production.metrics.Metrics;
+import hr.java.production.metrics.Timer;
+import hr.java.production.model.Entity;
 import hr.java.production.util.DbUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 /**
  * Bazna klasa za servisni sloj koja sadrži pomoćne metode za transakcijsko izvršavanje posla
  * te korisne util metode za rukovanje iznimkama i transakcijama.
@@ -15,8 +27,33 @@ import java.sql.SQLException;
 public abstract class TransactionService {
     protected final Logger log = LoggerFactory.getLogger(getClass());
 
+    /** Izvršitelj asinkronih poziva servisa: svaka operacija na vlastitoj virtualnoj dretvi. */
+    private static final ExecutorService ASYNC_EXECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("service-async-", 0).factory());
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    /** Brojač ponovljenih pokušaja transakcija nakon prolazne greške. */
+    private static final String RETRY_COUNTER = "transaction.retry";
+    /** Brojač transakcija koje su i nakon svih ponavljanja završile prolaznom greškom. */
+    private static final String RETRIES_EXHAUSTED_COUNTER = "transaction.retriesExhausted";
+
+    /**
+     * Vrsta transakcije; naziv je ujedno naziv mjerača u kategoriji
+     * {@link Metrics.Category#TRANSACTION}.
+     */
+    private enum Kind { READ_ONLY, READ_WRITE }
+
+    private static final String READ_ONLY_ISOLATION_KEY = "tx.readOnlyIsolation";
+    private static volatile Integer readOnlyIsolation;
+    private static volatile RetryPolicy retryPolicy;
+
     /**
      * Pomoćna metoda: izvrši posao u transakciji bez ugniježđenih try blokova.
+     * Ako transakcija propadne zbog prolazne greške (istek zaključavanja, deadlock), posao se
+     * ponavlja prema pravilu iz parametara {@code tx.retry.*}; posao zato ne smije imati
+     * vanjske učinke osim rada s bazom preko predane veze (zapis u dnevnik promjena i
+     * obavijesti idu nakon povratka iz ove metode).
      *
      * @param work         lambda koja prima Connection i vraća rezultat
      * @param errorMessage poruka u slučaju greške
@@ -25,12 +62,86 @@ public abstract class TransactionService {
      * @throws DatabaseException u slučaju greške pri radu s bazom
      */
     protected <R> R inTransaction(SQLFunction<R> work, String errorMessage) throws DatabaseException {
+        return inTransaction(work, errorMessage, getRetryPolicy(), List.of());
+    }
+
+    /**
+     * Pomoćna metoda: izvrši posao u transakciji uz dano pravilo ponavljanja.
+     * Za posao koji se ne smije ponoviti koristi se {@link RetryPolicy#NONE}.
+     *
+     * @param work         lambda koja prima Connection i vraća rezultat
+     * @param errorMessage poruka u slučaju greške
+     * @param retryPolicy  pravilo ponavljanja nakon prolazne greške
+     * @param <R>          tip rezultata
+     * @return rezultat posla
+     * @throws DatabaseException u slučaju greške pri radu s bazom
+     */
+    protected <R> R inTransaction(SQLFunction<R> work, String errorMessage, RetryPolicy retryPolicy)
+            throws DatabaseException {
+        return inTransaction(work, errorMessage, retryPolicy, List.of());
+    }
+
+    /**
+     * Pomoćna metoda: izvrši posao koji sprema nove entitete. DAO upisuje generirani ID u
+     * entitet odmah nakon INSERT-a; ako transakcija zatim ne uspije, entitetima koji prije
+     * pokušaja nisu imali ID on se vraća na null, pa ponovljeni pokušaj (ili pozivatelj, npr.
+     * forma koja ponovno sprema iste objekte) ne vidi ID-eve retka koji ne postoji.
+     *
+     * @param work         lambda koja prima Connection i vraća rezultat
+     * @param errorMessage poruka u slučaju greške
+     * @param entities     entiteti koje posao može spremiti (null elementi se preskaču)
+     * @param <R>          tip rezultata
+     * @return rezultat posla
+     * @throws DatabaseException u slučaju greške pri radu s bazom
+     */
+    protected <R> R inTransaction(SQLFunction<R> work, String errorMessage, Collection<? extends Entity> entities)
+            throws DatabaseException {
+        return inTransaction(work, errorMessage, getRetryPolicy(), entities);
+    }
+
+    private <R> R inTransaction(SQLFunction<R> work, String errorMessage, RetryPolicy retryPolicy,
+                                Collection<? extends Entity> entities) throws DatabaseException {
+        Timer methodTimer = serviceMethodTimer();
+        long start = System.nanoTime();
+        boolean committed = false;
+
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    R result = executeOnce(work, errorMessage, entities);
+                    committed = true;
+                    return result;
+                } catch (DatabaseException e) {
+                    if (!retryPolicy.isTransient(e)) throw e;
+                    if (attempt >= retryPolicy.getMaxAttempts()) {
+                        if (retryPolicy.getMaxAttempts() > 1) countEvent(RETRIES_EXHAUSTED_COUNTER);
+                        throw e;
+                    }
+                    long backoff = retryPolicy.backoffMillis(attempt);
+                    log.debug("Transient failure on attempt {}, retrying in {} ms", attempt, backoff, e);
+                    countEvent(RETRY_COUNTER);
+                    sleepBeforeRetry(backoff, e);
+                }
+            }
+        } finally {
+            if (methodTimer != null) methodTimer.record(System.nanoTime() - start, !committed);
+        }
+    }
+
+    private <R> R executeOnce(SQLFunction<R> work, String errorMessage, Collection<? extends Entity> entities)
+            throws DatabaseException {
         Connection conn = null;
         boolean committed = false;
         boolean prevAuto = true;
+        long start = 0;
+        List<Entity> unsaved = new ArrayList<>();
+        for (Entity e : entities) {
+            if (e != null && e.getId() == null) unsaved.add(e);
+        }
 
         try {
             conn = DbUtils.connectToDatabase();
+            start = System.nanoTime();
 
             prevAuto = getAutoCommitOrTrue(conn);
             setAutoCommitQuietly(conn, false);
@@ -46,20 +157,206 @@ public abstract class TransactionService {
         } catch (RuntimeException e) {
             throw new DatabaseException(errorMessage, e);
         } finally {
+            if (!committed) unsaved.forEach(e -> e.setId(null));
             if (conn != null) {
                 if (!committed) rollbackQuietly(conn);
                 setAutoCommitQuietly(conn, prevAuto);
                 closeQuietly(conn);
+                recordTransaction(Kind.READ_WRITE, System.nanoTime() - start, !committed);
             }
         }
     }
 
+    private void sleepBeforeRetry(long millis, DatabaseException cause) throws DatabaseException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cause.addSuppressed(e);
+            throw cause;
+        }
+    }
+
+    /**
+     * Pomoćna metoda: izvrši posao koji samo čita iz baze. Veza ostaje u autocommit načinu
+     * pa nema commit/rollback poziva; označava se kao read-only (u H2 bez učinka, ali pool tu
+     * oznaku bilježi lokalno pa ne košta poziv prema bazi ni pri vraćanju veze) i po potrebi
+     * dobiva razinu izolacije iz parametra {@code tx.readOnlyIsolation}. Pool pri vraćanju
+     * veze vraća zadane postavke.
+     *
+     * @param work         lambda koja prima Connection i vraća rezultat
+     * @param errorMessage poruka u slučaju greške
+     * @param <R>          tip rezultata
+     * @return rezultat posla
+     * @throws DatabaseException u slučaju greške pri radu s bazom
+     */
+    protected <R> R inReadOnly(SQLFunction<R> work, String errorMessage) throws DatabaseException {
+        Timer methodTimer = serviceMethodTimer();
+        long start = System.nanoTime();
+        long connected = 0;
+        boolean succeeded = false;
+
+        try (Connection conn = DbUtils.connectToDatabase()) {
+            connected = System.nanoTime();
+            conn.setReadOnly(true);
+            int isolation = getReadOnlyIsolation();
+            if (isolation != Connection.TRANSACTION_NONE) conn.setTransactionIsolation(isolation);
+
+            R result = work.apply(conn);
+            succeeded = true;
+            return result;
+
+        } catch (DatabaseConnectionException | SQLException e) {
+            throw new DatabaseException("Greška pri uspostavi veze prema bazi", e);
+        } catch (RuntimeException e) {
+            throw new DatabaseException(errorMessage, e);
+        } finally {
+            long end = System.nanoTime();
+            if (methodTimer != null) methodTimer.record(end - start, !succeeded);
+            if (connected != 0) recordTransaction(Kind.READ_ONLY, end - connected, !succeeded);
+        }
+    }
+
+    /**
+     * Pomoćna metoda: izvrši operaciju servisa asinkrono na virtualnoj dretvi.
+     * {@code cancel(true)} na vraćenom future objektu prekida dretvu, pa se prekida čekanje
+     * na vezu iz poola ili na ponavljanje transakcije.
+     *
+     * @param work operacija servisa
+     * @param <R>  tip rezultata
+     * @return future koji se završava rezultatom ili greškom operacije
+     */
+    protected static <R> CompletableFuture<R> async(AsyncWork<R> work) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        Future<?> task = ASYNC_EXECUTOR.submit(() -> {
+            try {
+                result.complete(work.call());
+            } catch (DatabaseException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled()) task.cancel(true);
+        });
+        return result;
+    }
+
+    /**
+     * Vraća listu entiteta za {@link #inTransaction(SQLFunction, String, Collection)}: korijenski
+     * entitet i njegove podređene entitete (npr. račun i stavke).
+     *
+     * @param root     korijenski entitet (može biti null)
+     * @param children podređeni entiteti (može biti null)
+     * @return lista bez null vrijednosti
+     */
+    protected static List<Entity> entities(Entity root, Collection<? extends Entity> children) {
+        List<Entity> all = new ArrayList<>();
+        if (root != null) all.add(root);
+        if (children != null) all.addAll(children);
+        return all;
+    }
+
+    /**
+     * Provjerava je li greška (ili neki njezin uzrok) kršenje danog ograničenja baze. Koristi
+     * se kad servis umjesto provjere upitom prije upisa oslanja na ograničenje pa grešku baze
+     * prevodi u poruku za korisnika.
+     *
+     * @param error          greška pri upisu
+     * @param sqlState       SQLSTATE kršenja (npr. 23505 za jedinstveni ključ)
+     * @param constraintName naziv ograničenja kako ga baza navodi u poruci
+     * @return true ako je upis odbijen zbog tog ograničenja
+     */
+    protected static boolean violates(Throwable error, String sqlState, String constraintName) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql && sqlState.equals(sql.getSQLState())
+                    && sql.getMessage() != null
+                    && sql.getMessage().toUpperCase(Locale.ROOT).contains(constraintName.toUpperCase(Locale.ROOT))) {
+                return true;
+            }
+            if (t.getCause() == t) break;
+        }
+        return false;
+    }
+
+    /**
+     * Vraća mjerač metode servisa koja je pozvala inTransaction/inReadOnly (npr.
+     * "InvoiceService.findAll"), ili null ako je mjerenje isključeno.
+     */
+    private Timer serviceMethodTimer() {
+        Metrics m = Metrics.getInstance();
+        if (!m.isEnabled()) return null;
+        String caller = STACK_WALKER.walk(frames -> frames
+                .filter(f -> !f.getClassName().equals(TransactionService.class.getName()))
+                .findFirst()
+                .map(f -> f.getClassName().substring(f.getClassName().lastIndexOf('.') + 1)
+                        + "." + f.getMethodName())
+                .orElse(getClass().getSimpleName()));
+        return m.timer(Metrics.Category.SERVICE, caller);
+    }
+
+    /** Bilježi događaj u brojaču registra {@link Metrics}. */
+    private static void countEvent(String name) {
+        Metrics m = Metrics.getInstance();
+        if (m.isEnabled()) m.increment(name);
+    }
+
+    /** Bilježi trajanje jedne transakcije od posudbe veze do njezina vraćanja u pool. */
+    private static void recordTransaction(Kind kind, long elapsedNanos, boolean failed) {
+        Metrics m = Metrics.getInstance();
+        if (m.isEnabled()) m.timer(Metrics.Category.TRANSACTION, kind.name()).record(elapsedNanos, failed);
+    }
+
+    /** Funkcionalno sučelje: operacija servisa koja se izvršava asinkrono. */
+    @FunctionalInterface
+    protected interface AsyncWork<R> {
+        R call() throws DatabaseException;
+    }
+
     /** Funkcionalno sučelje: posao koji prima Connection i vraća rezultat R. */
     @FunctionalInterface
     protected interface SQLFunction<R> {
         R apply(Connection conn) throws SQLException, DatabaseException;
     }
 
+    private int getReadOnlyIsolation() throws DatabaseConnectionException {
+        Integer level = readOnlyIsolation;
+        if (level == null) {
+            level = parseIsolation(DbUtils.getProperty(READ_ONLY_ISOLATION_KEY, "DEFAULT"));
+            readOnlyIsolation = level;
+        }
+        return level;
+    }
+
+    private RetryPolicy getRetryPolicy() throws DatabaseException {
+        RetryPolicy policy = retryPolicy;
+        if (policy == null) {
+            try {
+                policy = new RetryPolicy(
+                        Integer.parseInt(DbUtils.getProperty("tx.retry.maxAttempts", "3")),
+                        Long.parseLong(DbUtils.getProperty("tx.retry.initialBackoffMillis", "50")),
+                        Long.parseLong(DbUtils.getProperty("tx.retry.maxBackoffMillis", "1000")));
+            } catch (DatabaseConnectionException | IllegalArgumentException e) {
+                throw new DatabaseException("Neispravne postavke ponavljanja transakcija", e);
+            }
+            retryPolicy = policy;
+        }
+        return policy;
+    }
+
+    private int parseIsolation(String name) {
+        return switch (name.toUpperCase()) {
+            case "READ_UNCOMMITTED" -> Connection.TRANSACTION_READ_UNCOMMITTED;
+            case "READ_COMMITTED" -> Connection.TRANSACTION_READ_COMMITTED;
+            case "REPEATABLE_READ" -> Connection.TRANSACTION_REPEATABLE_READ;
+            case "SERIALIZABLE" -> Connection.TRANSACTION_SERIALIZABLE;
+            case "DEFAULT" -> Connection.TRANSACTION_NONE;
+            default -> {
+                log.warn("Unknown {}={}, using connection default", READ_ONLY_ISOLATION_KEY, name);
+                yield Connection.TRANSACTION_NONE;
+            }
+        };
+    }
+
     private boolean getAutoCommitOrTrue(Connection conn) {
         try {
             return conn.getAutoCommit();
@@ -3,19 +3,16 @@ package hr.java.production.thread;
 import hr.java.production.log.BinaryChangeLogger;
 import hr.java.production.log.ChangeLog;
 import hr.java.production.model.Entity;
+import hr.java.production.util.BackgroundScheduler;
 import javafx.application.Platform;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.*;
 import java.util.function.Consumer;
 
 public final class ChangeLogRefresher implements AutoCloseable {
-    private final ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor(r -> {
-        Thread t = new Thread(r, "ChangeLogRefresher");
-        t.setDaemon(true);
-        return t;
-    });
+    private BackgroundScheduler.Registration registration;
 
     private final BinaryChangeLogger logger;
     private final long periodSeconds;
@@ -30,13 +27,15 @@ public final class ChangeLogRefresher implements AutoCloseable {
     }
 
     public void start() {
-        exec.scheduleAtFixedRate(() -> {
-            List<ChangeLog<Entity>> logs = logger.readAll();
-            Platform.runLater(() -> onLogs.accept(logs));
-        }, 0, periodSeconds, TimeUnit.SECONDS);
+        Duration period = Duration.ofSeconds(periodSeconds);
+        registration = BackgroundScheduler.getInstance().register("changelog-refresh",
+                period, period.dividedBy(10), () -> {
+                    List<ChangeLog<Entity>> logs = logger.readAll();
+                    Platform.runLater(() -> onLogs.accept(logs));
+                });
     }
 
     @Override public void close() {
-        exec.shutdownNow();
+        if (registration != null) registration.cancel();
     }
 }
\ No newline at end of file
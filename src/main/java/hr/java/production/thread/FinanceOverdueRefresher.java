@@ -2,61 +2,59 @@ package hr.java.production.thread;
 
 import hr.java.production.exception.DatabaseException;
 import hr.java.production.model.Role;
-import hr.java.production.service.InvoiceService;
+import hr.java.production.service.OverdueTracker;
+import hr.java.production.util.BackgroundScheduler;
 import hr.java.production.util.SessionManager;
 import javafx.application.Platform;
 import javafx.scene.control.Label;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.LocalDate;
-import java.util.concurrent.*;
+import java.time.Duration;
 
+/**
+ * Prikazuje obavijest financijskom timu o neplaćenim računima nakon dospijeća.
+ * Broj dospjelih računa dolazi kao događaj iz {@link OverdueTracker}-a (prelazak roka
+ * plaćanja, uplata, izmjena računa), pa nema periodičkog upita prema bazi.
+ */
 public final class FinanceOverdueRefresher implements AutoCloseable {
-    private final ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor(r -> {
-        Thread t = new Thread(r, "FinanceOverdueRefresher");
-        t.setDaemon(true);
-        return t;
-    });
-
-    private final InvoiceService invoiceService = new InvoiceService();
+    private final OverdueTracker tracker = OverdueTracker.getInstance();
+    private final OverdueTracker.Listener listener = this::showBanner;
     private final Label banner;
-    private final long periodSeconds;
     private final Logger logger = LoggerFactory.getLogger(FinanceOverdueRefresher.class);
 
-    public FinanceOverdueRefresher(Label banner, long periodSeconds) {
+    public FinanceOverdueRefresher(Label banner) {
         this.banner = banner;
-        this.periodSeconds = periodSeconds <= 0 ? 10 : periodSeconds;
     }
 
     public void start() {
         if (SessionManager.getCurrentUser().role() != Role.FINANCE) return;
 
-        exec.scheduleAtFixedRate(() -> {
+        // prva pretplata učitava stanje iz baze, pa se ne radi na FX dretvi
+        BackgroundScheduler.getInstance().runOnce("overdue-subscribe", Duration.ZERO, () -> {
             try {
-                var invoices = invoiceService.findAll();
-                long overdueCount = invoices.stream()
-                        .filter(inv -> !inv.isPaid() && inv.invoice().getDueDate().isBefore(LocalDate.now()))
-                        .count();
-
-                Platform.runLater(() -> {
-                    if (overdueCount > 0) {
-                        banner.setText("Trenutno ima " + overdueCount + " neplaćenih faktura nakon dospijeća!");
-                        banner.setVisible(true);
-                        banner.setManaged(true);
-                    } else {
-                        banner.setVisible(false);
-                        banner.setManaged(false);
-                    }
-                });
+                tracker.subscribe(listener);
             } catch (DatabaseException e) {
                 logger.error("Neuspješno dohvaćanje faktura za notificiranje financijskog tima", e);
             }
-        }, 0, periodSeconds, TimeUnit.SECONDS);
+        });
+    }
+
+    private void showBanner(long overdueCount) {
+        Platform.runLater(() -> {
+            if (overdueCount > 0) {
+                banner.setText("Trenutno ima " + overdueCount + " neplaćenih faktura nakon dospijeća!");
+                banner.setVisible(true);
+                banner.setManaged(true);
+            } else {
+                banner.setVisible(false);
+                banner.setManaged(false);
+            }
+        });
     }
 
     @Override
     public void close() {
-        exec.shutdownNow();
+        tracker.unsubscribe(listener);
     }
-}
\ No newline at end of file
+}
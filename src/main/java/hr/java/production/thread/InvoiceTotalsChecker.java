@@ -0,0 +1,48 @@
+package hr.java.production.thread;
+
+import hr.java.production.exception.DatabaseException;
+import hr.java.production.service.InvoiceService;
+import hr.java.production.util.BackgroundScheduler;
+import hr.java.production.util.DbUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+
+/**
+ * Periodički uspoređuje spremljeni zbroj i broj stavki računa sa stvarnim stavkama i
+ * ispravlja neusklađene račune. Period je {@code invoice.totalsCheckIntervalMinutes}
+ * (0 isključuje provjeru).
+ */
+public final class InvoiceTotalsChecker implements AutoCloseable {
+    private BackgroundScheduler.Registration registration;
+
+    private final InvoiceService invoiceService = new InvoiceService();
+    private final Logger logger = LoggerFactory.getLogger(InvoiceTotalsChecker.class);
+
+    public void start() {
+        long minutes;
+        try {
+            minutes = Long.parseLong(DbUtils.getProperty("invoice.totalsCheckIntervalMinutes", "0"));
+        } catch (NumberFormatException | DatabaseException e) {
+            logger.error("Neispravan parametar invoice.totalsCheckIntervalMinutes", e);
+            return;
+        }
+        if (minutes <= 0) return;
+
+        Duration period = Duration.ofMinutes(minutes);
+        registration = BackgroundScheduler.getInstance().register("invoice-totals-check",
+                period, period, period.dividedBy(10), () -> {
+                    try {
+                        invoiceService.checkTotals(true);
+                    } catch (DatabaseException e) {
+                        logger.error("Neuspješna provjera zbroja stavki računa", e);
+                    }
+                });
+    }
+
+    @Override
+    public void close() {
+        if (registration != null) registration.cancel();
+    }
+}
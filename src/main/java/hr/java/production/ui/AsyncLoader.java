@@ -0,0 +1,66 @@
+package hr.java.production.ui;
+
+import javafx.application.Platform;
+import javafx.scene.control.ProgressIndicator;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Učitava podatke za prikaz asinkrono: dok traje učitavanje prikazuje indikator napretka,
+ * a rezultat predaje na JavaFX dretvi. Novo učitavanje otkazuje prethodno nedovršeno,
+ * pa zastarjeli rezultat nikad ne prepisuje noviji.
+ * <p>
+ * Metode se pozivaju s JavaFX dretve.
+ *
+ * @param <T> tip učitanih podataka
+ */
+public final class AsyncLoader<T> {
+    private final ProgressIndicator indicator;
+    private CompletableFuture<T> pending;
+
+    public AsyncLoader(ProgressIndicator indicator) {
+        this.indicator = Objects.requireNonNull(indicator);
+        indicator.setVisible(false);
+    }
+
+    /**
+     * Pokreće učitavanje.
+     *
+     * @param source    pokreće asinkroni posao (npr. {@code service::findAllAsync})
+     * @param onSuccess prima rezultat na JavaFX dretvi
+     * @param onError   prima grešku na JavaFX dretvi
+     */
+    public void load(Supplier<CompletableFuture<T>> source, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        cancel();
+        CompletableFuture<T> future = source.get();
+        pending = future;
+        indicator.setVisible(true);
+        future.whenComplete((result, error) -> Platform.runLater(() -> {
+            if (pending != future) return;
+            pending = null;
+            indicator.setVisible(false);
+            if (error != null) onError.accept(unwrap(error));
+            else onSuccess.accept(result);
+        }));
+    }
+
+    /** Otkazuje nedovršeno učitavanje i prekida dretvu koja ga izvršava. */
+    public void cancel() {
+        if (pending == null) return;
+        pending.cancel(true);
+        pending = null;
+        indicator.setVisible(false);
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+}
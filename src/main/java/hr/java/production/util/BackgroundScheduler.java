@@ -0,0 +1,273 @@
+package hr.java.production.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Zajednički raspoređivač pozadinskih poslova aplikacije (osvježavanje prikaza, timeri,
+ * održavanje poola veza). Jedna dretva samo odbrojava vrijeme, a poslovi se izvršavaju na
+ * virtualnim dretvama, najviše {@link #DEFAULT_MAX_CONCURRENCY} istovremeno, neovisno o
+ * broju otvorenih prozora.
+ * <p>
+ * Periodički posao ne preklapa samog sebe: ako prethodno izvršavanje još traje kad dođe
+ * vrijeme sljedećem, sljedeće se preskače (i broji). Uz period se može zadati slučajni
+ * pomak (jitter) kako se poslovi istog perioda ne bi budili u isto vrijeme.
+ */
+public final class BackgroundScheduler implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(BackgroundScheduler.class);
+
+    /** Najveći broj poslova koji se izvršavaju istovremeno. */
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+    private static final BackgroundScheduler INSTANCE = new BackgroundScheduler(DEFAULT_MAX_CONCURRENCY);
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "BackgroundScheduler-timer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService workers = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("background-", 0).factory());
+    private final Semaphore concurrency;
+    private final Set<Task> tasks = ConcurrentHashMap.newKeySet();
+
+    BackgroundScheduler(int maxConcurrency) {
+        if (maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency mora biti barem 1");
+        this.concurrency = new Semaphore(maxConcurrency);
+    }
+
+    /**
+     * Vraća zajednički raspoređivač.
+     *
+     * @return instanca raspoređivača
+     */
+    public static BackgroundScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registrira periodički posao. Prvo izvršavanje je odmah (uz jitter), a svako sljedeće
+     * jedan period nakon planiranog početka prethodnog.
+     *
+     * @param name   naziv posla za logove i metrike
+     * @param period razmak između početaka izvršavanja
+     * @param jitter najveći slučajni pomak koji se dodaje svakom razmaku (može biti nula)
+     * @param action posao
+     * @return registracija kojom se posao otkazuje
+     */
+    public Registration register(String name, Duration period, Duration jitter, Runnable action) {
+        return register(name, Duration.ZERO, period, jitter, action);
+    }
+
+    /**
+     * Registrira periodički posao s početnim odgodom.
+     *
+     * @param name         naziv posla za logove i metrike
+     * @param initialDelay odgoda prvog izvršavanja
+     * @param period       razmak između početaka izvršavanja
+     * @param jitter       najveći slučajni pomak koji se dodaje svakom razmaku (može biti nula)
+     * @param action       posao
+     * @return registracija kojom se posao otkazuje
+     */
+    public Registration register(String name, Duration initialDelay, Duration period, Duration jitter,
+                                 Runnable action) {
+        if (period.isNegative() || period.isZero()) throw new IllegalArgumentException("Period mora biti pozitivan");
+        if (jitter.isNegative()) throw new IllegalArgumentException("Jitter ne smije biti negativan");
+        Task task = new Task(name, period.toNanos(), jitter.toNanos(), action);
+        tasks.add(task);
+        task.arm(System.nanoTime() + initialDelay.toNanos() + task.nextJitter());
+        return task;
+    }
+
+    /**
+     * Izvršava posao jednom nakon zadane odgode.
+     *
+     * @param name   naziv posla za logove i metrike
+     * @param delay  odgoda izvršavanja
+     * @param action posao
+     * @return registracija kojom se posao otkazuje prije izvršavanja
+     */
+    public Registration runOnce(String name, Duration delay, Runnable action) {
+        Task task = new Task(name, 0, 0, action);
+        tasks.add(task);
+        task.arm(System.nanoTime() + Math.max(0, delay.toNanos()));
+        return task;
+    }
+
+    /**
+     * Vraća metrike svih registriranih poslova.
+     *
+     * @return snimke metrika, po jedna za svaki aktivni posao
+     */
+    public List<TaskStats> getStats() {
+        List<TaskStats> stats = new ArrayList<>();
+        for (Task t : tasks) stats.add(t.stats());
+        return stats;
+    }
+
+    /** Otkazuje sve poslove i zaustavlja dretve raspoređivača. */
+    @Override
+    public void close() {
+        tasks.forEach(Task::cancel);
+        timer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /** Registrirani posao; {@link #cancel()} sprječava sva buduća izvršavanja. */
+    public interface Registration extends AutoCloseable {
+        void cancel();
+
+        @Override
+        default void close() {
+            cancel();
+        }
+    }
+
+    private final class Task implements Registration {
+        private final String name;
+        private final long periodNanos;
+        private final long jitterNanos;
+        private final Runnable action;
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        private final LongAdder runs = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder totalRunNanos = new LongAdder();
+        private final LongAccumulator maxRunNanos = new LongAccumulator(Math::max, 0);
+        private final LongAccumulator maxLagNanos = new LongAccumulator(Math::max, 0);
+        private volatile long lastLagNanos;
+
+        private volatile boolean cancelled;
+        private volatile ScheduledFuture<?> pending;
+
+        private Task(String name, long periodNanos, long jitterNanos, Runnable action) {
+            this.name = Objects.requireNonNull(name);
+            this.periodNanos = periodNanos;
+            this.jitterNanos = jitterNanos;
+            this.action = Objects.requireNonNull(action);
+        }
+
+        private boolean isPeriodic() {
+            return periodNanos > 0;
+        }
+
+        private long nextJitter() {
+            return jitterNanos == 0 ? 0 : ThreadLocalRandom.current().nextLong(jitterNanos + 1);
+        }
+
+        /** Postavlja sljedeće buđenje za planirano vrijeme (System.nanoTime). */
+        private void arm(long plannedNanos) {
+            if (cancelled || timer.isShutdown()) return;
+            long delay = Math.max(0, plannedNanos - System.nanoTime());
+            pending = timer.schedule(() -> fire(plannedNanos), delay, TimeUnit.NANOSECONDS);
+        }
+
+        private void fire(long plannedNanos) {
+            if (cancelled) return;
+            long lag = System.nanoTime() - plannedNanos;
+            lastLagNanos = lag;
+            maxLagNanos.accumulate(lag);
+
+            if (isPeriodic()) {
+                // sljedeće buđenje računa se od planiranog vremena; ako kasnimo, ne nadoknađujemo propušteno
+                long next = plannedNanos + periodNanos + nextJitter();
+                arm(Math.max(next, System.nanoTime()));
+            } else {
+                tasks.remove(this);
+            }
+
+            if (!running.compareAndSet(false, true)) {
+                skipped.increment();
+                log.debug("Background task '{}' still running, skipping this run", name);
+                return;
+            }
+            try {
+                workers.execute(this::run);
+            } catch (RuntimeException e) {
+                running.set(false);
+                log.debug("Background task '{}' rejected (scheduler closed)", name, e);
+            }
+        }
+
+        private void run() {
+            try {
+                concurrency.acquire();
+            } catch (InterruptedException e) {
+                running.set(false);
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                if (!cancelled) action.run();
+            } catch (RuntimeException e) {
+                failures.increment();
+                log.error("Pozadinski posao '{}' završio je greškom", name, e);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                runs.increment();
+                totalRunNanos.add(elapsed);
+                maxRunNanos.accumulate(elapsed);
+                concurrency.release();
+                running.set(false);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            tasks.remove(this);
+            ScheduledFuture<?> p = pending;
+            if (p != null) p.cancel(false);
+        }
+
+        private TaskStats stats() {
+            long count = runs.sum();
+            return new TaskStats(name, count, failures.sum(), skipped.sum(),
+                    count == 0 ? 0 : totalRunNanos.sum() / 1e6 / count,
+                    maxRunNanos.get() / 1e6,
+                    lastLagNanos / 1e6,
+                    maxLagNanos.get() / 1e6);
+        }
+    }
+
+    /**
+     * Snimka metrika jednog pozadinskog posla.
+     *
+     * @param name          naziv posla
+     * @param runs          broj izvršavanja
+     * @param failures      broj izvršavanja završenih greškom
+     * @param skipped       broj preskočenih izvršavanja jer je prethodno još trajalo
+     * @param avgRunMillis  prosječno trajanje izvršavanja
+     * @param maxRunMillis  najdulje trajanje izvršavanja
+     * @param lastLagMillis kašnjenje posljednjeg buđenja u odnosu na planirano vrijeme
+     * @param maxLagMillis  najveće kašnjenje buđenja
+     */
+    public record TaskStats(String name, long runs, long failures, long skipped,
+                            double avgRunMillis, double maxRunMillis,
+                            double lastLagMillis, double maxLagMillis) {
+        @Override
+        public String toString() {
+            return String.format("%s: runs=%d failures=%d skipped=%d avg=%.2f ms max=%.2f ms lag=%.2f ms maxLag=%.2f ms",
+                    name, runs, failures, skipped, avgRunMillis, maxRunMillis, lastLagMillis, maxLagMillis);
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package hr.java.production.util;
+
+import hr.java.production.exception.DatabaseConnectionException;
+import hr.java.production.metrics.Metrics;
+import hr.java.production.metrics.SlowQueryLog;
+import hr.java.production.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ograničeni pool JDBC veza. Veze se posuđuju metodom {@link #getConnection()}, a
+ * vraćaju u pool pozivom {@link Connection#close()} na dobivenom objektu, tako da
+ * postojeći try-with-resources kod radi bez izmjena.
+ * <p>
+ * Pool podržava provjeru veze pri posudbi, vremensko ograničenje čekanja na slobodnu vezu,
+ * izbacivanje neaktivnih veza te statistiku korištenja. Svaka fizička veza ima vlastiti
+ * {@link StatementCache} pa se fiksni SQL DAO klasa priprema jednom po vezi.
+ * <p>
+ * Dok je {@link Metrics} uključen, pool bilježi čekanje na vezu, a svaki PreparedStatement
+ * omata mjeračem trajanja i broja redaka po SQL naredbi; isto omatanje koristi i
+ * {@link SlowQueryLog}.
+ */
+public final class ConnectionPool implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final Config config;
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final BackgroundScheduler.Registration evictor;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger total = new AtomicInteger();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder evictedCount = new LongAdder();
+    private final LongAdder invalidCount = new LongAdder();
+    private final StatementCache.Counters statementCounters = new StatementCache.Counters();
+    private final Metrics metrics = Metrics.getInstance();
+    private final Timer waitTimer = metrics.timer(Metrics.Category.CONNECTION_WAIT, "pool");
+
+    private volatile boolean closed;
+
+    public ConnectionPool(Config config) {
+        this.config = config;
+        this.permits = new Semaphore(config.maxSize(), true);
+        Duration evictionInterval = Duration.ofMillis(config.evictionIntervalMillis());
+        this.evictor = BackgroundScheduler.getInstance().register("connection-pool-evictor",
+                evictionInterval, evictionInterval, evictionInterval.dividedBy(10), this::evictIdle);
+    }
+
+    /**
+     * Posuđuje vezu iz poola. Ako nema slobodne veze, a pool je popunjen, čeka najviše
+     * {@code maxWaitMillis} milisekundi.
+     *
+     * @return veza čiji close() vraća vezu u pool
+     * @throws DatabaseConnectionException ako istekne vrijeme čekanja ili se veza ne može uspostaviti
+     */
+    public Connection getConnection() throws DatabaseConnectionException {
+        if (closed) throw new DatabaseConnectionException("Pool veza je zatvoren");
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(config.maxWaitMillis(), TimeUnit.MILLISECONDS)) {
+                timeoutCount.increment();
+                throw new DatabaseConnectionException(
+                        "Isteklo vrijeme čekanja na slobodnu vezu (" + config.maxWaitMillis() + " ms)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseConnectionException("Prekinuto čekanje na slobodnu vezu", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pc = takeValidIdle();
+            if (pc == null) pc = createPhysical();
+            active.incrementAndGet();
+            borrowCount.increment();
+            return pc.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw new DatabaseConnectionException("Greška pri uspostavi veze prema bazi: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Vraća trenutnu statistiku poola.
+     *
+     * @return snimka stanja poola
+     */
+    public Stats getStats() {
+        int idleNow;
+        synchronized (idle) {
+            idleNow = idle.size();
+        }
+        long borrows = borrowCount.sum();
+        double avgWaitMillis = borrows == 0 ? 0 : totalWaitNanos.sum() / (double) borrows / 1_000_000d;
+        return new Stats(active.get(), idleNow, total.get(), config.maxSize(), permits.getQueueLength(),
+                borrows, timeoutCount.sum(), avgWaitMillis, maxWaitNanos.get() / 1_000_000d,
+                evictedCount.sum(), invalidCount.sum(),
+                statementCounters.hits.sum(), statementCounters.misses.sum(), statementCounters.evictions.sum());
+    }
+
+    /** Zatvara sve neaktivne veze i onemogućuje daljnje posuđivanje. */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.cancel();
+        List<PooledConnection> toClose;
+        synchronized (idle) {
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+        }
+        toClose.forEach(this::destroy);
+    }
+
+    private PooledConnection takeValidIdle() {
+        while (true) {
+            PooledConnection pc;
+            synchronized (idle) {
+                pc = idle.pollFirst();
+            }
+            if (pc == null) return null;
+            if (isValid(pc)) return pc;
+            invalidCount.increment();
+            destroy(pc);
+        }
+    }
+
+    private boolean isValid(PooledConnection pc) {
+        try {
+            return pc.physical.isValid(config.validationTimeoutSeconds());
+        } catch (SQLException e) {
+            log.debug("Validacija veze nije uspjela", e);
+            return false;
+        }
+    }
+
+    private PooledConnection createPhysical() throws SQLException {
+        Connection physical = DriverManager.getConnection(config.url(), config.username(), config.password());
+        total.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    private void release(PooledConnection pc) {
+        active.decrementAndGet();
+        try {
+            if (!closed && !pc.isBroken() && pc.resetState()) {
+                pc.lastUsedNanos = System.nanoTime();
+                synchronized (idle) {
+                    idle.offerFirst(pc);
+                }
+            } else {
+                destroy(pc);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void destroy(PooledConnection pc) {
+        total.decrementAndGet();
+        pc.statements.clear();
+        try {
+            pc.physical.close();
+        } catch (SQLException e) {
+            log.debug("Failed to close pooled connection (ignored)", e);
+        }
+    }
+
+    private void evictIdle() {
+        long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.idleTimeoutMillis());
+        long now = System.nanoTime();
+        List<PooledConnection> expired = new ArrayList<>();
+        synchronized (idle) {
+            // najdulje neaktivne veze su na kraju reda
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && idle.size() > config.minIdle()) {
+                PooledConnection pc = it.next();
+                if (now - pc.lastUsedNanos < idleTimeoutNanos) break;
+                it.remove();
+                expired.add(pc);
+            }
+        }
+        for (PooledConnection pc : expired) {
+            evictedCount.increment();
+            destroy(pc);
+        }
+        if (!expired.isEmpty()) log.debug("Izbačeno {} neaktivnih veza iz poola", expired.size());
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.add(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+        if (metrics.isEnabled()) waitTimer.record(nanos, false);
+    }
+
+    /**
+     * Fizička veza iz poola. Svaka posudba dobiva novi proxy (handle) kako dvostruki
+     * close() na starom handleu ne bi vratio vezu u pool dvaput.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statements;
+        private final int defaultIsolation;
+        private volatile long lastUsedNanos = System.nanoTime();
+        /* Postavke koje je korisnik postavio preko handlea; vraćanje stanja ne pita driver. */
+        private boolean autoCommit = true;
+        private boolean readOnly;
+        private int isolation;
+
+        private PooledConnection(Connection physical) throws SQLException {
+            this.physical = physical;
+            this.statements = new StatementCache(physical, Math.max(config.statementCacheSize(), 0), statementCounters);
+            this.defaultIsolation = physical.getTransactionIsolation();
+            this.isolation = defaultIsolation;
+        }
+
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Handle(this));
+        }
+
+        private boolean isBroken() {
+            try {
+                return physical.isClosed();
+            } catch (SQLException e) {
+                return true;
+            }
+        }
+
+        /**
+         * Vraća vezu u početno stanje (autoCommit, readOnly, izolacija) prije povratka u pool.
+         * Stanje se ne čita iz drivera (u H2 su isReadOnly i getTransactionIsolation upiti
+         * prema bazi), nego iz vrijednosti zabilježenih u handleu, pa se driver poziva samo
+         * za postavku koja je stvarno ostala promijenjena.
+         *
+         * @return true ako je veza spremna za ponovnu upotrebu
+         */
+        private boolean resetState() {
+            try {
+                if (!autoCommit) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                    autoCommit = true;
+                }
+                if (readOnly) {
+                    physical.setReadOnly(false);
+                    readOnly = false;
+                }
+                if (isolation != defaultIsolation) {
+                    physical.setTransactionIsolation(defaultIsolation);
+                    isolation = defaultIsolation;
+                }
+                return true;
+            } catch (SQLException e) {
+                log.debug("Failed to reset pooled connection, discarding it", e);
+                return false;
+            }
+        }
+    }
+
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pc;
+        private boolean released;
+
+        private Handle(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close" -> {
+                    if (!released) {
+                        released = true;
+                        release(pc);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return released || pc.physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled[" + pc.physical + "]";
+                }
+                default -> {
+                    if (released) throw new SQLException("Veza je već vraćena u pool");
+                }
+            }
+            // postavka s nepromijenjenom vrijednošću ne ide driveru
+            switch (name) {
+                case "setAutoCommit" -> {
+                    boolean value = (Boolean) args[0];
+                    if (value != pc.autoCommit) {
+                        forward(method, args);
+                        pc.autoCommit = value;
+                    }
+                    return null;
+                }
+                case "setReadOnly" -> {
+                    boolean value = (Boolean) args[0];
+                    if (value != pc.readOnly) {
+                        forward(method, args);
+                        pc.readOnly = value;
+                    }
+                    return null;
+                }
+                case "setTransactionIsolation" -> {
+                    int value = (Integer) args[0];
+                    if (value != pc.isolation) {
+                        forward(method, args);
+                        pc.isolation = value;
+                    }
+                    return null;
+                }
+                default -> {
+                    // ostali pozivi se obrađuju niže
+                }
+            }
+            if (name.equals("prepareStatement")) {
+                PreparedStatement ps = prepare(proxy, method, args);
+                boolean instrument = metrics.isEnabled() || SlowQueryLog.getInstance().isEnabled();
+                return instrument ? InstrumentedStatement.wrap(ps, (String) args[0]) : ps;
+            }
+            return forward(method, args);
+        }
+
+        private PreparedStatement prepare(Object proxy, Method method, Object[] args) throws Throwable {
+            Class<?>[] params = method.getParameterTypes();
+            if (params.length == 1) {
+                return pc.statements.prepare((Connection) proxy, (String) args[0], Statement.NO_GENERATED_KEYS);
+            }
+            if (params.length == 2 && params[1] == int.class) {
+                return pc.statements.prepare((Connection) proxy, (String) args[0], (Integer) args[1]);
+            }
+            return (PreparedStatement) forward(method, args);
+        }
+
+        private Object forward(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(pc.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Konfiguracija poola.
+     *
+     * @param url                      JDBC URL baze
+     * @param username                 korisničko ime
+     * @param password                 lozinka
+     * @param maxSize                  najveći broj istovremeno otvorenih veza
+     * @param minIdle                  broj neaktivnih veza koje se ne izbacuju
+     * @param maxWaitMillis            najdulje čekanje na slobodnu vezu
+     * @param idleTimeoutMillis        nakon koliko neaktivnosti se veza zatvara
+     * @param evictionIntervalMillis   period provjere neaktivnih veza
+     * @param validationTimeoutSeconds vremensko ograničenje provjere veze pri posudbi
+     * @param statementCacheSize       broj PreparedStatement objekata u cacheu po vezi (0 isključuje cache)
+     */
+    public record Config(String url,
+                         String username,
+                         String password,
+                         int maxSize,
+                         int minIdle,
+                         long maxWaitMillis,
+                         long idleTimeoutMillis,
+                         long evictionIntervalMillis,
+                         int validationTimeoutSeconds,
+                         int statementCacheSize) {
+
+        public Config {
+            if (url == null || url.isBlank()) throw new IllegalArgumentException("dbUrl nije postavljen");
+            if (maxSize < 1) throw new IllegalArgumentException("pool.maxSize mora biti barem 1");
+            if (evictionIntervalMillis < 1) {
+                throw new IllegalArgumentException("pool.evictionIntervalMillis mora biti pozitivan");
+            }
+            minIdle = Math.clamp(minIdle, 0, maxSize);
+        }
+
+        /**
+         * Čita konfiguraciju poola iz svojstava datoteke db.properties. JDBC URL određuje
+         * aktivni {@link DatabaseProfile}.
+         *
+         * @param props učitana svojstva
+         * @return konfiguracija poola
+         */
+        public static Config fromProperties(Properties props) {
+            return new Config(
+                    DatabaseProfile.resolve(props).url(props),
+                    props.getProperty("username"),
+                    props.getProperty("password"),
+                    Integer.parseInt(props.getProperty("pool.maxSize", "10")),
+                    Integer.parseInt(props.getProperty("pool.minIdle", "1")),
+                    Long.parseLong(props.getProperty("pool.maxWaitMillis", "5000")),
+                    Long.parseLong(props.getProperty("pool.idleTimeoutMillis", "300000")),
+                    Long.parseLong(props.getProperty("pool.evictionIntervalMillis", "30000")),
+                    Integer.parseInt(props.getProperty("pool.validationTimeoutSeconds", "2")),
+                    Integer.parseInt(props.getProperty("pool.statementCacheSize", "64")));
+        }
+    }
+
+    /**
+     * Snimka stanja poola.
+     *
+     * @param active             broj posuđenih veza
+     * @param idle               broj slobodnih veza
+     * @param total              ukupno otvorenih fizičkih veza
+     * @param maxSize            gornja granica poola
+     * @param waiting            broj dretvi koje čekaju vezu
+     * @param borrowCount        ukupan broj posudbi
+     * @param timeoutCount       broj isteklih čekanja
+     * @param avgWaitMillis      prosječno čekanje na vezu
+     * @param maxWaitMillis      najdulje zabilježeno čekanje na vezu
+     * @param evictedCount       broj izbačenih neaktivnih veza
+     * @param invalidCount       broj veza odbačenih pri provjeri
+     * @param statementHits      broj PreparedStatement objekata dobivenih iz cachea
+     * @param statementMisses    broj PreparedStatement objekata koji su morali biti pripremljeni
+     * @param statementEvictions broj statementa izbačenih iz cachea (LRU)
+     */
+    public record Stats(int active,
+                        int idle,
+                        int total,
+                        int maxSize,
+                        int waiting,
+                        long borrowCount,
+                        long timeoutCount,
+                        double avgWaitMillis,
+                        double maxWaitMillis,
+                        long evictedCount,
+                        long invalidCount,
+                        long statementHits,
+                        long statementMisses,
+                        long statementEvictions) {
+    }
+}
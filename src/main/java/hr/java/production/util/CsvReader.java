@@ -0,0 +1,175 @@
+package hr.java.production.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Čitač CSV datoteka zapis po zapis (RFC 4180): vrijednosti u navodnicima mogu sadržavati
+ * razdjelnik, prijelaz u novi red i udvostručene navodnike. Čita se iz toka, pa potrošnja
+ * memorije ne ovisi o veličini datoteke.
+ */
+public final class CsvReader implements Closeable {
+    private static final int DETECT_LIMIT = 8192;
+
+    private final Reader in;
+    private final char delimiter;
+    private final StringBuilder field = new StringBuilder();
+    /** Vlastiti međuspremnik: čitanje znak po znak iz Readera bilo bi sinkronizirano po pozivu. */
+    private final char[] buffer = new char[DETECT_LIMIT];
+    private int position;
+    private int limit;
+    private long line = 1;
+    private long recordLine;
+    private int pushedBack = -2;
+
+    public CsvReader(Reader in, char delimiter) {
+        this.in = in;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Otvara UTF-8 CSV datoteku. Razdjelnik (',' ili ';') određuje se iz prvog retka,
+     * jer lokalizirani Excel sprema CSV sa ';'.
+     *
+     * @param file CSV datoteka
+     * @return čitač pozicioniran na početak datoteke
+     * @throws IOException ako se datoteka ne može otvoriti
+     */
+    public static CsvReader open(Path file) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        try {
+            reader.mark(DETECT_LIMIT);
+            char[] buf = new char[DETECT_LIMIT];
+            int n = reader.read(buf);
+            reader.reset();
+            if (n > 0 && buf[0] == '\uFEFF') reader.skip(1); // UTF-8 BOM iz Excela
+            int commas = 0;
+            int semicolons = 0;
+            for (int i = 0; i < n && buf[i] != '\n'; i++) {
+                if (buf[i] == ',') commas++;
+                else if (buf[i] == ';') semicolons++;
+            }
+            return new CsvReader(reader, semicolons > commas ? ';' : ',');
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    /**
+     * Vraća broj retka datoteke u kojem počinje zadnji pročitani zapis.
+     *
+     * @return broj retka (od 1)
+     */
+    public long getRecordLine() {
+        return recordLine;
+    }
+
+    /**
+     * Čita sljedeći zapis. Prazni retci se preskaču.
+     *
+     * @return vrijednosti zapisa ili null na kraju datoteke
+     * @throws IOException ako čitanje ne uspije ili navodnik nije zatvoren
+     */
+    public String[] next() throws IOException {
+        int c;
+        do {
+            c = read();
+            if (c == '\r') c = read();
+            if (c == '\n') line++;
+        } while (c == '\n');
+        if (c < 0) return null;
+
+        recordLine = line;
+        List<String> values = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean afterQuote = false;
+        while (true) {
+            if (quoted) {
+                if (c < 0) throw new IOException("Navodnik nije zatvoren (zapis u retku " + recordLine + ")");
+                if (c == '"') {
+                    int peek = read();
+                    if (peek == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        afterQuote = true;
+                        c = peek;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') line++;
+                    field.append((char) c);
+                }
+            } else if (c < 0 || c == '\n' || c == '\r') {
+                values.add(field.toString());
+                if (c == '\r') {
+                    int peek = read();
+                    if (peek != '\n') unread(peek);
+                }
+                if (c >= 0) line++;
+                return values.toArray(String[]::new);
+            } else if (c == delimiter) {
+                values.add(field.toString());
+                field.setLength(0);
+                afterQuote = false;
+            } else if (c == '"' && field.isEmpty() && !afterQuote) {
+                quoted = true;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Preskače zadani broj zapisa (npr. već uvezenih pri nastavku uvoza).
+     *
+     * @param count broj zapisa
+     * @return broj stvarno preskočenih zapisa (manji ako datoteka završi ranije)
+     * @throws IOException ako čitanje ne uspije
+     */
+    public long skip(long count) throws IOException {
+        long skipped = 0;
+        while (skipped < count && next() != null) skipped++;
+        return skipped;
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != -2) {
+            int c = pushedBack;
+            pushedBack = -2;
+            return c;
+        }
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    private void unread(int c) {
+        pushedBack = c;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,67 @@
+package hr.java.production.util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Zapisuje CSV zapise (RFC 4180) u tok. Vrijednost se stavlja u navodnike samo ako sadrži
+ * razdjelnik, navodnik ili prijelaz u novi red. Null se zapisuje kao prazna vrijednost.
+ */
+public final class CsvWriter implements Closeable, Flushable {
+    private final Writer out;
+    private final char delimiter;
+
+    public CsvWriter(Writer out, char delimiter) {
+        this.out = out;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Zapisuje jedan zapis i prijelaz u novi red.
+     *
+     * @param values vrijednosti zapisa
+     * @throws IOException ako pisanje ne uspije
+     */
+    public void writeRecord(String... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) out.write(delimiter);
+            writeValue(values[i]);
+        }
+        out.write('\n');
+    }
+
+    private void writeValue(String value) throws IOException {
+        if (value == null || value.isEmpty()) return;
+        if (!needsQuotes(value)) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') out.write('"');
+            out.write(c);
+        }
+        out.write('"');
+    }
+
+    private boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == delimiter || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,68 @@
+package hr.java.production.util;
+
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Profil izvođenja baze podataka. Odabire se parametrom {@code db.profile} u "db/db.properties"
+ * ili sistemskim svojstvom {@code -Ddb.profile=...} koje ima prednost.
+ * <ul>
+ *     <li>{@link #TCP} - zasebno pokrenut H2 server (parametar {@code dbUrl})</li>
+ *     <li>{@link #EMBEDDED} - H2 baza u datoteci, otvorena unutar procesa aplikacije</li>
+ *     <li>{@link #MEMORY} - H2 baza u memoriji, živi dok traje proces</li>
+ * </ul>
+ * Za EMBEDDED i MEMORY profil shema i početni podaci primjenjuju se automatski ako baza
+ * još nema tablica.
+ */
+public enum DatabaseProfile {
+    TCP("dbUrl", "jdbc:h2:tcp://localhost/~/payment"),
+    EMBEDDED("db.url.embedded", "jdbc:h2:~/payment;CACHE_SIZE=131072;LOCK_TIMEOUT=2000"),
+    MEMORY("db.url.memory", "jdbc:h2:mem:payment;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=2000");
+
+    /** Naziv parametra (i sistemskog svojstva) kojim se odabire profil. */
+    public static final String PROFILE_KEY = "db.profile";
+
+    private final String urlKey;
+    private final String defaultUrl;
+
+    DatabaseProfile(String urlKey, String defaultUrl) {
+        this.urlKey = urlKey;
+        this.defaultUrl = defaultUrl;
+    }
+
+    /**
+     * Određuje aktivni profil: sistemsko svojstvo, zatim konfiguracijski parametar, inače TCP.
+     *
+     * @param props konfiguracijski parametri
+     * @return aktivni profil
+     * @throws IllegalArgumentException ako naziv profila nije poznat
+     */
+    public static DatabaseProfile resolve(Properties props) {
+        String name = System.getProperty(PROFILE_KEY, props.getProperty(PROFILE_KEY, "tcp"));
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Nepoznat profil baze: " + name, e);
+        }
+    }
+
+    /**
+     * Vraća JDBC URL za ovaj profil.
+     *
+     * @param props konfiguracijski parametri
+     * @return JDBC URL iz konfiguracije ili zadani URL profila
+     */
+    public String url(Properties props) {
+        String url = props.getProperty(urlKey);
+        return url == null || url.isBlank() ? defaultUrl : url.trim();
+    }
+
+    /**
+     * Vraća primjenjuje li se shema automatski pri pokretanju.
+     *
+     * @return true za bazu unutar procesa (EMBEDDED, MEMORY)
+     */
+    public boolean isInProcess() {
+        return this != TCP;
+    }
+}
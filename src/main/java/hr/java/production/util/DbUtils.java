@@ -1,30 +1,185 @@
 package hr.java.production.util;
 
 import hr.java.production.exception.DatabaseConnectionException;
+import hr.java.production.exception.DatabaseException;
+import hr.java.production.metrics.Metrics;
+import hr.java.production.metrics.SlowQueryLog;
+import hr.java.production.repo.db.migration.MigrationRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.Properties;
 
 /**
  * Klasa za povezivanje na bazu podataka.
- * Sadrži statičnu metodu za uspostavljanje veze s bazom koristeći konfiguracijske parametre.
+ * Sadrži statičnu metodu za dohvaćanje veze iz poola veza koji se inicijalizira
+ * pri prvom pozivu na temelju konfiguracijskih parametara. Za bazu unutar procesa
+ * (vidi {@link DatabaseProfile}) pri inicijalizaciji se po potrebi primjenjuju
+ * "db/schema.sql" i "db/populate.sql", a zatim se primjenjuju migracije sheme
+ * (vidi {@link MigrationRunner}) ako parametar {@code db.migrate} nije false.
+ * Parametri {@code metrics.*} uključuju mjerenje ({@link Metrics}) i periodički ispis u log,
+ * a {@code query.slowThresholdMillis} log sporih upita ({@link SlowQueryLog}).
  */
 public final class DbUtils {
+    private static final Logger log = LoggerFactory.getLogger(DbUtils.class);
+
     private static final String DATABASE_FILE = "/db/db.properties";
+    private static final String SCHEMA_SCRIPT = "/db/schema.sql";
+    private static final String POPULATE_SCRIPT = "/db/populate.sql";
+    private static final String TABLE_EXISTS_SQL =
+            "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = 'INVOICE'";
+    private static volatile ConnectionPool pool;
+    private static volatile Properties properties;
+    private static BackgroundScheduler.Registration metricsLogger;
+
     private DbUtils() {}
 
     /**
-     * Spaja se na bazu podataka koristeći konfiguracijske parametre iz
-     * datoteke "db/db.properties".
+     * Dohvaća vezu iz poola veza. Pool se stvara pri prvom pozivu koristeći
+     * konfiguracijske parametre iz datoteke "db/db.properties".
+     * Zatvaranjem dobivene veze ona se vraća u pool.
      *
      * @return objekt Connection koji predstavlja uspješno uspostavljenu vezu s bazom podataka
      * @throws DatabaseConnectionException ako dođe do problema prilikom spajanja na bazu podataka
      */
     public static Connection connectToDatabase() throws DatabaseConnectionException {
+        return getPool().getConnection();
+    }
+
+    /**
+     * Vraća trenutnu statistiku poola veza (aktivne, slobodne veze, vrijeme čekanja...).
+     *
+     * @return snimka stanja poola
+     * @throws DatabaseConnectionException ako se pool ne može inicijalizirati
+     */
+    public static ConnectionPool.Stats getPoolStats() throws DatabaseConnectionException {
+        return getPool().getStats();
+    }
+
+    /**
+     * Vraća aktivni profil baze podataka.
+     *
+     * @return profil odabran u konfiguraciji ili sistemskim svojstvom
+     * @throws DatabaseConnectionException ako se konfiguracija ne može učitati ili profil nije poznat
+     */
+    public static DatabaseProfile getProfile() throws DatabaseConnectionException {
+        try {
+            return DatabaseProfile.resolve(getProperties());
+        } catch (IllegalArgumentException e) {
+            throw new DatabaseConnectionException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Vraća vrijednost konfiguracijskog parametra iz "db/db.properties".
+     *
+     * @param key          naziv parametra
+     * @param defaultValue vrijednost ako parametar nije postavljen
+     * @return vrijednost parametra (bez vodećih i završnih razmaka) ili zadana vrijednost
+     * @throws DatabaseConnectionException ako se konfiguracijska datoteka ne može učitati
+     */
+    public static String getProperty(String key, String defaultValue) throws DatabaseConnectionException {
+        String value = getProperties().getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    /**
+     * Zatvara pool veza. Sljedeći poziv {@link #connectToDatabase()} stvara novi pool.
+     */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    private static ConnectionPool getPool() throws DatabaseConnectionException {
+        ConnectionPool p = pool;
+        if (p != null) return p;
+        synchronized (DbUtils.class) {
+            if (pool == null) {
+                configureMetrics();
+                ConnectionPool created;
+                try {
+                    created = new ConnectionPool(ConnectionPool.Config.fromProperties(getProperties()));
+                } catch (IllegalArgumentException e) {
+                    throw new DatabaseConnectionException(e.getMessage(), e);
+                }
+                try {
+                    if (getProfile().isInProcess()) initializeSchema(created);
+                    if (Boolean.parseBoolean(getProperty("db.migrate", "true"))) migrateSchema(created);
+                } catch (DatabaseConnectionException e) {
+                    created.close();
+                    throw e;
+                }
+                pool = created;
+            }
+            return pool;
+        }
+    }
+
+    private static void configureMetrics() throws DatabaseConnectionException {
+        Metrics metrics = Metrics.getInstance();
+        metrics.setEnabled(Boolean.parseBoolean(getProperty("metrics.enabled", "true")));
+        long interval;
+        try {
+            interval = Long.parseLong(getProperty("metrics.logIntervalSeconds", "0"));
+            SlowQueryLog.getInstance().setThresholdMillis(Long.parseLong(getProperty("query.slowThresholdMillis", "0")));
+        } catch (NumberFormatException e) {
+            throw new DatabaseConnectionException("Neispravan parametar metrics.logIntervalSeconds ili query.slowThresholdMillis", e);
+        }
+        if (metrics.isEnabled() && interval > 0 && metricsLogger == null) {
+            metricsLogger = BackgroundScheduler.getInstance().register("metrics-log",
+                    Duration.ofSeconds(interval), Duration.ofSeconds(interval), Duration.ZERO, metrics::dumpToLog);
+        }
+    }
+
+    private static void initializeSchema(ConnectionPool pool) throws DatabaseConnectionException {
+        try (Connection conn = pool.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(TABLE_EXISTS_SQL);
+                 ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && rs.getInt(1) > 0) return;
+            }
+            log.info("Initializing empty {} database from {} and {}", getProfile(), SCHEMA_SCRIPT, POPULATE_SCRIPT);
+            conn.setAutoCommit(false);
+            SqlScript.load(SCHEMA_SCRIPT).execute(conn);
+            SqlScript.load(POPULATE_SCRIPT).execute(conn);
+            conn.commit();
+        } catch (SQLException | IOException e) {
+            throw new DatabaseConnectionException("Greška pri inicijalizaciji sheme baze", e);
+        }
+    }
+
+    private static void migrateSchema(ConnectionPool pool) throws DatabaseConnectionException {
+        try (Connection conn = pool.getConnection()) {
+            int applied = MigrationRunner.defaults().migrate(conn);
+            if (applied > 0) log.info("Applied {} schema migration(s)", applied);
+        } catch (SQLException e) {
+            throw new DatabaseConnectionException("Greška pri zatvaranju veze nakon migracije", e);
+        } catch (DatabaseConnectionException e) {
+            throw e;
+        } catch (DatabaseException e) {
+            throw new DatabaseConnectionException(e.getMessage(), e);
+        }
+    }
+
+    private static Properties getProperties() throws DatabaseConnectionException {
+        Properties p = properties;
+        if (p == null) {
+            p = loadProperties();
+            properties = p;
+        }
+        return p;
+    }
+
+    private static Properties loadProperties() throws DatabaseConnectionException {
         Properties props = new Properties();
 
         try (InputStream in = DbUtils.class
@@ -34,15 +189,10 @@ public final class DbUtils {
                 throw new IllegalStateException("Nije pronađen db/db.properties");
             }
             props.load(in);
+            return props;
 
-            String url = props.getProperty("dbUrl");
-            String user = props.getProperty("username");
-            String password = props.getProperty("password");
-
-            return DriverManager.getConnection(url, user, password);
-
-        } catch (IOException | IllegalStateException | SQLException e) {
+        } catch (IOException | IllegalStateException e) {
             throw new DatabaseConnectionException(e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,203 @@
+package hr.java.production.util;
+
+import hr.java.production.metrics.Metrics;
+import hr.java.production.metrics.SlowQueryLog;
+import hr.java.production.metrics.Timer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Omotač PreparedStatement objekta koji mjeri trajanje svakog izvršavanja i broj redaka
+ * po SQL naredbi (vidi {@link Metrics#sqlTimer(String)}). Za upite se mjeri izvršavanje
+ * naredbe, a retci se broje dok pozivatelj čita ResultSet i bilježe kad se on zatvori.
+ * Za izmjene se bilježi broj promijenjenih redaka. Izvršavanje dulje od praga
+ * {@link SlowQueryLog} zapisuje se u log sporih upita.
+ */
+final class InstrumentedStatement implements InvocationHandler {
+    private final PreparedStatement target;
+    private final String sql;
+    private final Timer timer;
+    private final Metrics metrics = Metrics.getInstance();
+    private final SlowQueryLog slowQueries = SlowQueryLog.getInstance();
+    private RowCounter openResult;
+    /** Posljednji vezani niz (parametar {@code = ANY(?)}), za opis sporog upita. */
+    private Array boundArray;
+    private int batchSize;
+
+    private InstrumentedStatement(PreparedStatement target, String sql, Timer timer) {
+        this.target = target;
+        this.sql = sql;
+        this.timer = timer;
+    }
+
+    /**
+     * Omata statement mjeračem za dani SQL.
+     *
+     * @param target statement koji se omata
+     * @param sql    SQL tekst statementa
+     * @return statement koji bilježi metrike i prosljeđuje sve pozive na {@code target}
+     */
+    static PreparedStatement wrap(PreparedStatement target, String sql) {
+        return (PreparedStatement) Proxy.newProxyInstance(
+                InstrumentedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new InstrumentedStatement(target, sql, Metrics.getInstance().sqlTimer(sql)));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "executeQuery", "execute", "executeUpdate", "executeLargeUpdate",
+                 "executeBatch", "executeLargeBatch" -> {
+                return execute(method, args);
+            }
+            case "setArray" -> boundArray = (Array) args[1];
+            case "clearParameters" -> boundArray = null;
+            case "addBatch" -> batchSize++;
+            case "clearBatch" -> batchSize = 0;
+            case "close" -> {
+                flushRows();
+                boundArray = null;
+            }
+            case "equals" -> {
+                return proxy == args[0];
+            }
+            case "hashCode" -> {
+                return System.identityHashCode(proxy);
+            }
+            default -> {
+                // ostali pozivi se prosljeđuju izravno
+            }
+        }
+        return forward(method, args);
+    }
+
+    private Object execute(Method method, Object[] args) throws Throwable {
+        flushRows();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = forward(method, args);
+            failed = false;
+            if (!metrics.isEnabled()) return result;
+            switch (result) {
+                case ResultSet rs -> {
+                    openResult = new RowCounter(rs);
+                    return openResult.proxy();
+                }
+                case Integer n -> timer.addRows(n);
+                case Long n -> timer.addRows(n);
+                case int[] counts -> {
+                    for (int n : counts) timer.addRows(n);
+                }
+                case long[] counts -> {
+                    for (long n : counts) timer.addRows(n);
+                }
+                case null, default -> {
+                    // execute() vraća boolean; retci se ne broje
+                }
+            }
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (metrics.isEnabled()) timer.record(elapsed, failed);
+            if (slowQueries.isSlow(elapsed)) slowQueries.record(sql, parameterCount(), detail(), elapsed, failed);
+            if (method.getName().endsWith("Batch")) batchSize = 0;
+        }
+    }
+
+    private int parameterCount() {
+        try {
+            return target.getParameterMetaData().getParameterCount();
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    private String detail() {
+        StringBuilder sb = new StringBuilder();
+        if (boundArray != null) {
+            try {
+                if (boundArray.getArray() instanceof Object[] values) sb.append("array=").append(values.length);
+            } catch (SQLException e) {
+                sb.append("array=?");
+            }
+        }
+        if (batchSize > 0) {
+            if (!sb.isEmpty()) sb.append(' ');
+            sb.append("batch=").append(batchSize);
+        }
+        return sb.toString();
+    }
+
+    private void flushRows() {
+        if (openResult != null) {
+            openResult.flush();
+            openResult = null;
+        }
+    }
+
+    private Object forward(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** Broji retke pročitane iz ResultSet objekta i predaje ih mjeraču pri zatvaranju. */
+    private final class RowCounter implements InvocationHandler {
+        private final ResultSet rs;
+        private long rows;
+        private boolean flushed;
+
+        private RowCounter(ResultSet rs) {
+            this.rs = rs;
+        }
+
+        private ResultSet proxy() {
+            return (ResultSet) Proxy.newProxyInstance(
+                    InstrumentedStatement.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class},
+                    this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> flush();
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                default -> {
+                    // ostali pozivi se prosljeđuju izravno
+                }
+            }
+            Object result;
+            try {
+                result = method.invoke(rs, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (Boolean.TRUE.equals(result) && method.getName().equals("next")) rows++;
+            return result;
+        }
+
+        private void flush() {
+            if (flushed) return;
+            flushed = true;
+            timer.addRows(rows);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package hr.java.production.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SQL skripta iz resursa aplikacije (npr. "db/schema.sql"), podijeljena na pojedinačne naredbe.
+ * Skripta se čita iz modula aplikacije jer H2 {@code RUNSCRIPT FROM 'classpath:...'} ne vidi
+ * resurse zatvorene u modulu.
+ */
+public final class SqlScript {
+    private final String name;
+    private final List<String> statements;
+
+    private SqlScript(String name, List<String> statements) {
+        this.name = name;
+        this.statements = statements;
+    }
+
+    /**
+     * Učitava skriptu iz resursa.
+     *
+     * @param resource apsolutna putanja resursa, npr. "/db/schema.sql"
+     * @return učitana skripta
+     * @throws IOException ako resurs ne postoji ili se ne može pročitati
+     */
+    public static SqlScript load(String resource) throws IOException {
+        try (InputStream in = SqlScript.class.getResourceAsStream(resource)) {
+            if (in == null) throw new IOException("Nije pronađena SQL skripta " + resource);
+            return new SqlScript(resource, split(new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * Stvara skriptu iz SQL teksta.
+     *
+     * @param name naziv skripte (za poruke o greškama)
+     * @param sql  SQL tekst s naredbama odvojenima znakom ';'
+     * @return skripta
+     */
+    public static SqlScript of(String name, String sql) {
+        return new SqlScript(name, split(sql));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getStatements() {
+        return statements;
+    }
+
+    /**
+     * Izvršava sve naredbe skripte redom na danoj vezi.
+     *
+     * @param conn veza na bazu podataka
+     * @throws SQLException ako neka naredba ne uspije; poruka navodi skriptu i redni broj naredbe
+     */
+    public void execute(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            for (int i = 0; i < statements.size(); i++) {
+                try {
+                    st.execute(statements.get(i));
+                } catch (SQLException e) {
+                    throw new SQLException("Greška u naredbi " + (i + 1) + " skripte " + name
+                            + ": " + e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Dijeli SQL tekst na naredbe po znaku ';' izvan navodnika i izostavlja komentare
+     * oblika {@code -- ...}.
+     */
+    static List<String> split(String sql) {
+        List<String> result = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inString = false;
+        boolean inIdentifier = false;
+
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (!inString && !inIdentifier && c == '-' && i + 1 < sql.length() && sql.charAt(i + 1) == '-') {
+                int eol = sql.indexOf('\n', i);
+                i = eol < 0 ? sql.length() : eol;
+                current.append('\n');
+                continue;
+            }
+            if (c == '\'' && !inIdentifier) inString = !inString;
+            else if (c == '"' && !inString) inIdentifier = !inIdentifier;
+
+            if (c == ';' && !inString && !inIdentifier) {
+                addStatement(result, current);
+            } else {
+                current.append(c);
+            }
+        }
+        addStatement(result, current);
+        return List.copyOf(result);
+    }
+
+    private static void addStatement(List<String> result, StringBuilder current) {
+        String statement = current.toString().trim();
+        if (!statement.isEmpty()) result.add(statement);
+        current.setLength(0);
+    }
+}
@@ -0,0 +1,215 @@
+package hr.java.production.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU priručna memorija PreparedStatement objekata jedne fizičke veze, s ključem SQL tekst
+ * (i zastavica generiranih ključeva). Statement dobiven iz cachea pri close() se ne zatvara
+ * nego vraća u cache, pa se isti SQL na istoj vezi parsira samo jednom.
+ * <p>
+ * Pri povratku u cache vraćaju se zadani fetchSize i maxRows. Vremensko ograničenje
+ * (queryTimeout) H2 drži na razini sesije, a ne naredbe, i svaki {@code setQueryTimeout}
+ * izvršava {@code SET QUERY_TIMEOUT} na serveru. Cache zato pamti zadnje postavljeno
+ * ograničenje veze i poziv prosljeđuje driveru samo kad se vrijednost promijeni (DAO ga
+ * postavlja pri svakoj pripremi, vidi {@code DbDao.prepare}). Zato i naredbe koje se ne
+ * spremaju u cache (cache veličine 0, isti SQL već u upotrebi) prolaze kroz isti omotač.
+ * <p>
+ * Veza iz poola koristi se iz jedne dretve u isto vrijeme pa klasa nije sinkronizirana.
+ */
+final class StatementCache {
+    private static final Logger log = LoggerFactory.getLogger(StatementCache.class);
+
+    private final Connection physical;
+    private final Map<Key, Entry> entries;
+    private final Counters counters;
+    private final int maxSize;
+    /** Zadnje ograničenje postavljeno na sesiji veze; -1 dok nije poznato. */
+    private int queryTimeout = -1;
+
+    StatementCache(Connection physical, int maxSize, Counters counters) {
+        this.physical = physical;
+        this.counters = counters;
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() <= maxSize) return false;
+                Entry e = eldest.getValue();
+                e.evicted = true;
+                counters.evictions.increment();
+                if (!e.inUse) closeQuietly(e.statement);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Vraća PreparedStatement za dani SQL, iz cachea ako postoji i nije trenutno u upotrebi.
+     *
+     * @param owner             proxy veze koji se vraća iz getConnection()
+     * @param sql               SQL tekst
+     * @param autoGeneratedKeys {@link java.sql.Statement#RETURN_GENERATED_KEYS} ili NO_GENERATED_KEYS
+     * @return statement čiji close() vraća statement u cache
+     * @throws SQLException ako priprema statementa ne uspije
+     */
+    PreparedStatement prepare(Connection owner, String sql, int autoGeneratedKeys) throws SQLException {
+        Key key = new Key(sql, autoGeneratedKeys);
+        Entry e = entries.get(key);
+        if (e != null && !e.inUse) {
+            counters.hits.increment();
+        } else if (e != null || maxSize == 0) {
+            // isti SQL je već otvoren na ovoj vezi (npr. ugniježđeni upit) ili je cache
+            // isključen - naredba se ne dijeli i zatvara se pri close()
+            counters.misses.increment();
+            e = new Entry(key, physical.prepareStatement(sql, autoGeneratedKeys));
+            e.evicted = true;
+        } else {
+            counters.misses.increment();
+            e = new Entry(key, physical.prepareStatement(sql, autoGeneratedKeys));
+            entries.put(key, e);
+        }
+        e.inUse = true;
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new Handle(owner, e));
+    }
+
+    /** Zatvara sve statemente u cacheu. */
+    void clear() {
+        entries.values().forEach(e -> closeQuietly(e.statement));
+        entries.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            log.debug("Failed to close cached statement (ignored)", e);
+        }
+    }
+
+    private record Key(String sql, int autoGeneratedKeys) {
+    }
+
+    private static final class Entry {
+        private final Key key;
+        private final PreparedStatement statement;
+        private final int defaultFetchSize;
+        private final int defaultMaxRows;
+        private boolean inUse;
+        private boolean evicted;
+
+        private Entry(Key key, PreparedStatement statement) throws SQLException {
+            this.key = key;
+            this.statement = statement;
+            this.defaultFetchSize = statement.getFetchSize();
+            this.defaultMaxRows = statement.getMaxRows();
+        }
+    }
+
+    private final class Handle implements InvocationHandler {
+        private final Connection owner;
+        private final Entry entry;
+        private boolean closed;
+        private boolean batched;
+        private boolean settingsChanged;
+
+        private Handle(Connection owner, Entry entry) {
+            this.owner = owner;
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        giveBack();
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed;
+                }
+                case "getConnection" -> {
+                    return owner;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "setQueryTimeout" -> {
+                    if (closed) throw new SQLException("Statement je zatvoren");
+                    setQueryTimeout((Integer) args[0]);
+                    return null;
+                }
+                case "getQueryTimeout" -> {
+                    if (closed) throw new SQLException("Statement je zatvoren");
+                    if (queryTimeout < 0) queryTimeout = entry.statement.getQueryTimeout();
+                    return queryTimeout;
+                }
+                case "addBatch" -> batched = true;
+                case "setFetchSize", "setMaxRows" -> settingsChanged = true;
+                default -> {
+                    // ostali pozivi se prosljeđuju izravno
+                }
+            }
+            if (closed) throw new SQLException("Statement je zatvoren");
+            try {
+                return method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void setQueryTimeout(int seconds) throws SQLException {
+            if (seconds == queryTimeout) return;
+            entry.statement.setQueryTimeout(seconds);
+            queryTimeout = seconds;
+        }
+
+        private void giveBack() {
+            entry.inUse = false;
+            if (entry.evicted) {
+                closeQuietly(entry.statement);
+                return;
+            }
+            try {
+                entry.statement.clearParameters();
+                if (batched) entry.statement.clearBatch();
+                if (settingsChanged) {
+                    entry.statement.setFetchSize(entry.defaultFetchSize);
+                    entry.statement.setMaxRows(entry.defaultMaxRows);
+                }
+            } catch (SQLException e) {
+                log.debug("Failed to reset cached statement, closing it", e);
+                entry.evicted = true;
+                entries.remove(entry.key);
+                closeQuietly(entry.statement);
+            }
+        }
+    }
+
+    /** Brojači pogodaka, promašaja i izbacivanja, zajednički za sve veze u poolu. */
+    static final class Counters {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+    }
+}
@@ -0,0 +1,10 @@
+-- Indeksi za najčešće putanje pristupa (stavke i uplate po računu, računi po freelanceru i roku plaćanja)
+
+CREATE INDEX IF NOT EXISTS idx_service_invoice ON service(invoice_id, id);
+
+CREATE INDEX IF NOT EXISTS idx_invoice_freelancer ON invoice(freelancer_id, id);
+
+CREATE INDEX IF NOT EXISTS idx_invoice_due_date ON invoice(due_date, id);
+
+-- Račun ima najviše jednu uplatu
+ALTER TABLE payment ADD CONSTRAINT IF NOT EXISTS ux_payment_invoice UNIQUE (invoice_id);
@@ -0,0 +1,19 @@
+-- Evidencija skupnog uvoza iz CSV datoteka
+
+-- Vanjski ključ iz izvorne datoteke -> ID uvezenog zapisa (za reference između datoteka
+-- i preskakanje već uvezenih zapisa)
+CREATE TABLE IF NOT EXISTS import_key (
+  kind         VARCHAR(20) NOT NULL,
+  external_key VARCHAR(100) NOT NULL,
+  entity_id    BIGINT NOT NULL,
+  PRIMARY KEY (kind, external_key)
+);
+
+-- Broj obrađenih zapisa po izvoru; sprema se u istoj transakciji kao i uvezeni dio
+CREATE TABLE IF NOT EXISTS import_checkpoint (
+  source       VARCHAR(500) PRIMARY KEY,
+  kind         VARCHAR(20) NOT NULL,
+  records_done BIGINT NOT NULL,
+  rejected     BIGINT NOT NULL,
+  updated_on   TIMESTAMP NOT NULL
+);
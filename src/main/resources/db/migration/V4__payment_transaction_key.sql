@@ -0,0 +1,2 @@
+-- ID transakcije je prirodni ključ uplate (MERGE ... KEY(transaction_id) u PaymentDao.upsert)
+ALTER TABLE payment ADD CONSTRAINT IF NOT EXISTS ux_payment_transaction UNIQUE (transaction_id);
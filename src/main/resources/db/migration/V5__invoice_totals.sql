@@ -0,0 +1,9 @@
+-- Spremljeni zbroj i broj stavki računa (održava ih InvoiceService pri upisu računa)
+ALTER TABLE invoice ADD COLUMN IF NOT EXISTS total_amount DECIMAL(19,2) NOT NULL DEFAULT 0;
+
+ALTER TABLE invoice ADD COLUMN IF NOT EXISTS line_count INT NOT NULL DEFAULT 0;
+
+-- Početne vrijednosti za postojeće račune
+UPDATE invoice i SET
+  total_amount = COALESCE((SELECT SUM(s.unit_fee * s.quantity) FROM service s WHERE s.invoice_id = i.id), 0),
+  line_count   = (SELECT COUNT(*) FROM service s WHERE s.invoice_id = i.id);
@@ -0,0 +1,6 @@
+-- Indeksi za izvještaje (ReportDao): raspon po datumu računa odnosno uplate, s kolonama
+-- koje se grupiraju i zbrajaju, pa se upit izvršava nad samim indeksom
+
+CREATE INDEX IF NOT EXISTS idx_invoice_date ON invoice(invoice_date, freelancer_id, total_amount);
+
+CREATE INDEX IF NOT EXISTS idx_payment_paid_on ON payment(paid_on, invoice_id, amount);